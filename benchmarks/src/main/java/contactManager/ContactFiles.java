@@ -0,0 +1,41 @@
+package contactManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+// Synthetic contacts files, generated once per size and reused between runs
+class ContactFiles {
+
+    static Path contactsFile(int rows) throws IOException {
+        Path path = Paths.get(System.getProperty("java.io.tmpdir"), "contacts-bench-" + rows + ".txt");
+        if (!Files.exists(path)) {
+            Path tmp = Files.createTempFile(path.getParent(), "contacts-bench-", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < rows; i++) {
+                    writer.write(name(i));
+                    writer.write(',');
+                    writer.write(phoneNumber(i));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return path;
+    }
+
+    // spread over the alphabet, so sorted and prefix indexes see realistic keys
+    static String name(int i) {
+        int scrambled = i * 0x9E3779B1;
+        return (char) ('a' + Integer.remainderUnsigned(scrambled, 26)) + "contact" + i;
+    }
+
+    // ten digits, many contacts share a number as in the sample file
+    static String phoneNumber(int i) {
+        return String.format("%010d", (i * 7919L) % 1_000_000_000L);
+    }
+}
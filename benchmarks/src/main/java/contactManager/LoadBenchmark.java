@@ -0,0 +1,61 @@
+package contactManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Startup load of contacts.txt into the store the menu uses
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class LoadBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = ContactFiles.contactsFile(rows);
+    }
+
+    // Files.readAllLines and String.split, as loadContactsFromFile does
+    @Benchmark
+    public ContactStore readAllLines() throws IOException {
+        ConcurrentContactStore contacts = new ConcurrentContactStore();
+        ContactManager.readContacts(file, contacts);
+        return contacts;
+    }
+
+    // as loadContactsFromFileParallel does
+    @Benchmark
+    public ContactStore mappedParallel() throws IOException {
+        ConcurrentContactStore contacts = new ConcurrentContactStore();
+        for (Contact contact : new ContactFileLoader().load(file)) {
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    // parsing alone, without building the indexes
+    @Benchmark
+    public int mappedParallelParseOnly() throws IOException {
+        return new ContactFileLoader().load(file).size();
+    }
+}
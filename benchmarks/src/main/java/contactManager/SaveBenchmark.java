@@ -0,0 +1,61 @@
+package contactManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Writing the whole directory back to disk
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class SaveBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private ContactStore contacts;
+    private Path target;
+
+    @Setup
+    public void setup() throws IOException {
+        contacts = new ConcurrentContactStore();
+        for (Contact contact : new ContactFileLoader().load(ContactFiles.contactsFile(rows))) {
+            contacts.add(contact);
+        }
+        target = Files.createTempFile("contacts-save-", ".txt");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(target);
+    }
+
+    // builds every line in a List<String> first, as writeContactsToFile does
+    @Benchmark
+    public void writeContactsToFile() throws IOException {
+        ContactManager.writeContacts(target, contacts);
+    }
+
+    // streams through one buffered writer, as export does
+    @Benchmark
+    public long export() throws IOException {
+        return ContactBatch.exportContacts(contacts, target);
+    }
+}
@@ -0,0 +1,96 @@
+package contactManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Search, the duplicate check on add, add and delete against each ContactStore implementation
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class StoreBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"concurrent", "index", "compact"})
+    public String store;
+
+    private ContactStore contacts;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (store) {
+            case "index":
+                contacts = new ContactIndex();
+                break;
+            case "compact":
+                contacts = new CompactContactStore();
+                break;
+            default:
+                contacts = new ConcurrentContactStore();
+        }
+        for (Contact contact : new ContactFileLoader().load(ContactFiles.contactsFile(rows))) {
+            contacts.add(contact);
+        }
+    }
+
+    private int nextRow() {
+        next = (next + 7919) % rows;
+        return next;
+    }
+
+    // searchContactByName
+    @Benchmark
+    public List<Contact> searchByName() {
+        return contacts.findByName(ContactFiles.name(nextRow()));
+    }
+
+    // addContact's duplicate check for a name that is not taken, the common case
+    @Benchmark
+    public boolean duplicateCheck() {
+        return contacts.containsName("missing" + nextRow());
+    }
+
+    @Benchmark
+    public List<Contact> searchByPrefix() {
+        return contacts.findByNamePrefix(ContactFiles.name(nextRow()).substring(0, 3), 10);
+    }
+
+    @Benchmark
+    public List<Contact> searchByPhoneNumber() {
+        return contacts.findByPhoneNumber(ContactFiles.phoneNumber(nextRow()));
+    }
+
+    // deleteContact, with the contact put back so the store keeps its size
+    @Benchmark
+    public Contact deleteAndAdd() {
+        Contact removed = contacts.removeByName(ContactFiles.name(nextRow()));
+        contacts.add(removed);
+        return removed;
+    }
+
+    // addContact with its duplicate check, undone so the store keeps its size
+    @Benchmark
+    public Contact addAndDelete() {
+        int row = nextRow();
+        contacts.addIfAbsent(new Contact("added" + row, ContactFiles.phoneNumber(row)));
+        return contacts.removeByName("added" + row);
+    }
+}
@@ -0,0 +1,318 @@
+package contactManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// Columnar contact store for very large directories, with the same operations as ContactIndex.
+//
+// A row is a packed phone number in a long[], a name offset into one UTF-8 arena (on or off heap)
+// and a folded-name hash, about 20 bytes plus the name instead of three objects per contact.
+// Contact objects are only created when a row is read. Not thread safe.
+public class CompactContactStore implements ContactStore {
+    // a phone number that isn't 0-17 plain digits is kept as a String in otherPhones
+    private static final long OTHER_PHONE = -1;
+    private static final int MAX_PACKED_DIGITS = 17;
+    private static final int DIGITS_SHIFT = 57;
+    // hash table slots hold row + 1, so 0 is free; deleted slots keep probing going
+    private static final int FREE = 0;
+    private static final int DELETED = -1;
+
+    private final boolean offHeap;
+    private ByteBuffer names;
+    // nameOffsets[row] to nameOffsets[row + 1] is the row's name in the arena
+    private int[] nameOffsets = new int[17];
+    private long[] phones = new long[16];
+    private int[] nameHashes = new int[16];
+    private final BitSet deleted = new BitSet();
+    private final Map<Integer, String> otherPhones = new HashMap<>();
+    private int rows;
+    private int live;
+
+    // open addressing, row order is kept along each probe sequence
+    private int[] table = new int[32];
+    private int tableUsed;
+
+    public CompactContactStore() {
+        this(false);
+    }
+
+    // offHeap keeps the name bytes in a direct buffer, outside the GC's view
+    public CompactContactStore(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.names = allocate(1024);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    static long packPhone(String phoneNumber) {
+        int length = phoneNumber.length();
+        if (length > MAX_PACKED_DIGITS) {
+            return OTHER_PHONE;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = phoneNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return OTHER_PHONE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        // the digit count keeps leading zeros, "0987654321" is not "987654321"
+        return ((long) length << DIGITS_SHIFT) | value;
+    }
+
+    static String unpackPhone(long packed) {
+        int length = (int) (packed >>> DIGITS_SHIFT);
+        long value = packed & ((1L << DIGITS_SHIFT) - 1);
+        char[] digits = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    public void add(Contact contact) {
+        byte[] name = contact.getName().getBytes(StandardCharsets.UTF_8);
+        if (rows == phones.length) {
+            int capacity = Math.max(16, phones.length + (phones.length >> 1));
+            phones = Arrays.copyOf(phones, capacity);
+            nameHashes = Arrays.copyOf(nameHashes, capacity);
+            nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+        }
+        int offset = nameOffsets[rows];
+        ensureArena(offset + name.length);
+        names.put(offset, name);
+        nameOffsets[rows + 1] = offset + name.length;
+
+        long packed = packPhone(contact.getPhoneNumber());
+        if (packed == OTHER_PHONE) {
+            otherPhones.put(rows, contact.getPhoneNumber());
+        }
+        phones[rows] = packed;
+        nameHashes[rows] = ContactIndex.fold(contact.getName()).hashCode();
+        if ((tableUsed + 1) * 4L > table.length * 3L) {
+            rehash();
+        }
+        insert(rows);
+        rows++;
+        live++;
+    }
+
+    private void ensureArena(int needed) {
+        if (needed < 0 || needed > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Name arena is full");
+        }
+        if (needed <= names.capacity()) {
+            return;
+        }
+        long capacity = Math.max(needed, (long) names.capacity() * 2);
+        ByteBuffer grown = allocate((int) Math.min(capacity, Integer.MAX_VALUE - 8));
+        grown.put(0, names, 0, nameOffsets[rows]);
+        names = grown;
+    }
+
+    private void insert(int row) {
+        int mask = table.length - 1;
+        int slot = spread(nameHashes[row]) & mask;
+        while (table[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = row + 1;
+        tableUsed++;
+    }
+
+    // sized for the live rows, so deleted slots are dropped as well
+    private void rehash() {
+        int capacity = 32;
+        while (capacity * 3L < (live + 1) * 4L) {
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+        tableUsed = 0;
+        for (int row = 0; row < rows; row++) {
+            if (!deleted.get(row)) {
+                insert(row);
+            }
+        }
+    }
+
+    // String hashes of similar names are close together, which would pile up under linear probing
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public boolean containsName(String name) {
+        return firstSlot(ContactIndex.fold(name)) >= 0;
+    }
+
+    public List<Contact> findByName(String name) {
+        String folded = ContactIndex.fold(name);
+        int hash = folded.hashCode();
+        List<Contact> matches = new ArrayList<>(1);
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; table[slot] != FREE; slot = (slot + 1) & mask) {
+            int row = table[slot] - 1;
+            if (row >= 0 && nameHashes[row] == hash && ContactIndex.fold(name(row)).equals(folded)) {
+                matches.add(contactAt(row));
+            }
+        }
+        return matches;
+    }
+
+    private int firstSlot(String folded) {
+        int hash = folded.hashCode();
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; table[slot] != FREE; slot = (slot + 1) & mask) {
+            int row = table[slot] - 1;
+            if (row >= 0 && nameHashes[row] == hash && ContactIndex.fold(name(row)).equals(folded)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // this store has no sorted index, so it scans rows in insertion order and stops at limit
+    public List<Contact> findByNamePrefix(String prefix, int limit) {
+        String folded = ContactIndex.fold(prefix);
+        List<Contact> matches = new ArrayList<>();
+        for (int row = 0; row < rows && matches.size() < limit; row++) {
+            if (!deleted.get(row) && ContactIndex.fold(name(row)).startsWith(folded)) {
+                matches.add(contactAt(row));
+            }
+        }
+        return matches;
+    }
+
+    // a scan over the packed longs, with no per-row objects unless a row matches
+    public List<Contact> findByPhoneNumber(String phoneNumber) {
+        String digits = ContactIndex.normalizePhone(phoneNumber);
+        long packed = packPhone(digits);
+        List<Contact> matches = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            if (deleted.get(row)) {
+                continue;
+            }
+            if (phones[row] == OTHER_PHONE) {
+                if (ContactIndex.normalizePhone(otherPhones.get(row)).equals(digits)) {
+                    matches.add(contactAt(row));
+                }
+            } else if (phones[row] == packed) {
+                matches.add(contactAt(row));
+            }
+        }
+        return matches;
+    }
+
+    // removes the first contact added under this name, or returns null if there is none
+    public Contact removeByName(String name) {
+        int slot = firstSlot(ContactIndex.fold(name));
+        if (slot < 0) {
+            return null;
+        }
+        int row = table[slot] - 1;
+        Contact removed = contactAt(row);
+        table[slot] = DELETED;
+        deleted.set(row);
+        otherPhones.remove(row);
+        live--;
+        if (rows > 1024 && live < rows / 2) {
+            compact();
+        }
+        return removed;
+    }
+
+    // drops deleted rows and their name bytes, keeping the order of the rest
+    private void compact() {
+        ByteBuffer packedNames = allocate(Math.max(1024, nameOffsets[rows]));
+        int[] offsets = new int[live + 1];
+        long[] packedPhones = new long[live];
+        int[] hashes = new int[live];
+        Map<Integer, String> others = new HashMap<>();
+        int to = 0;
+        for (int row = 0; row < rows; row++) {
+            if (deleted.get(row)) {
+                continue;
+            }
+            int start = nameOffsets[row];
+            int length = nameOffsets[row + 1] - start;
+            packedNames.put(offsets[to], names, start, length);
+            offsets[to + 1] = offsets[to] + length;
+            packedPhones[to] = phones[row];
+            hashes[to] = nameHashes[row];
+            if (phones[row] == OTHER_PHONE) {
+                others.put(to, otherPhones.get(row));
+            }
+            to++;
+        }
+        names = packedNames;
+        nameOffsets = offsets;
+        phones = packedPhones;
+        nameHashes = hashes;
+        otherPhones.clear();
+        otherPhones.putAll(others);
+        deleted.clear();
+        rows = live;
+        rehash();
+    }
+
+    private String name(int row) {
+        int start = nameOffsets[row];
+        byte[] bytes = new byte[nameOffsets[row + 1] - start];
+        names.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Contact contactAt(int row) {
+        long packed = phones[row];
+        String phoneNumber = packed == OTHER_PHONE ? otherPhones.get(row) : unpackPhone(packed);
+        return new Contact(name(row), phoneNumber);
+    }
+
+    // copy in insertion order
+    public List<Contact> snapshot() {
+        List<Contact> contacts = new ArrayList<>(live);
+        for (Contact contact : this) {
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    public int size() {
+        return live;
+    }
+
+    // creates each Contact as it is reached
+    @Override
+    public Iterator<Contact> iterator() {
+        return new Iterator<>() {
+            private int row = deleted.nextClearBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return row < rows;
+            }
+
+            @Override
+            public Contact next() {
+                if (row >= rows) {
+                    throw new NoSuchElementException();
+                }
+                Contact contact = contactAt(row);
+                row = deleted.nextClearBit(row + 1);
+                return contact;
+            }
+        };
+    }
+}
@@ -0,0 +1,308 @@
+package contactManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// Thread-safe contact store. Reads never lock: the name index maps a key to an immutable array of
+// entries that writers replace, and the phone index maps a number to a concurrent set, since many
+// contacts can share one number. Writes to one name are serialized by a lock striped on the
+// folded name, and phone index updates use the map's atomic compute. Iteration is weakly consistent: it
+// never throws ConcurrentModificationException and sees each contact at most once, in insertion order.
+public class ConcurrentContactStore implements ContactStore {
+    private static final int STRIPES = 64;
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    private static final Comparator<Entry> IN_ORDER = Comparator.comparingLong(entry -> entry.sequence);
+
+    // called after each change, while the name's lock is held, so calls for one name arrive in order
+    public interface Listener {
+        void added(Contact contact);
+
+        void removed(Contact contact);
+    }
+
+    // writes each change down before the store makes it, while the name's lock is held
+    public interface ChangeLog {
+        void recordAdd(Contact contact) throws IOException;
+
+        void recordDelete(Contact contact) throws IOException;
+    }
+
+    private static final class Entry {
+        final long sequence;
+        final Contact contact;
+
+        Entry(long sequence, Contact contact) {
+            this.sequence = sequence;
+            this.contact = contact;
+        }
+    }
+
+    private final ConcurrentSkipListMap<Long, Contact> order = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Entry[]> byName = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<String> sortedNames = new ConcurrentSkipListSet<>();
+    // sets rather than arrays: placeholder and digit-less numbers can be shared by thousands of contacts,
+    // and copying an array on every change would make those O(k^2)
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<Entry>> byPhone = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    // writers share it, withWritesPaused takes it exclusively
+    private final ReentrantReadWriteLock writeGate = new ReentrantReadWriteLock();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ChangeLog changeLog;
+    // the first change the log failed to write; from then on every change is refused
+    private volatile IOException changeLogFailure;
+
+    public ConcurrentContactStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    // changes the log can't write throw UncheckedIOException and leave the store as it was
+    public void setChangeLog(ChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    private void record(Contact contact, boolean added) {
+        ChangeLog log = changeLog;
+        if (log == null) {
+            return;
+        }
+        IOException failure = changeLogFailure;
+        if (failure != null) {
+            throw new UncheckedIOException("Changes are refused since the journal failed", failure);
+        }
+        try {
+            if (added) {
+                log.recordAdd(contact);
+            } else {
+                log.recordDelete(contact);
+            }
+        } catch (IOException e) {
+            changeLogFailure = e;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ReentrantLock stripe(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    @Override
+    public void add(Contact contact) {
+        String key = ContactIndex.fold(contact.getName());
+        lock(key);
+        try {
+            insert(key, contact);
+        } finally {
+            unlock(key);
+        }
+    }
+
+    // timed as an add; plain add() is what loading and replay use, so it isn't
+    @Override
+    public boolean addIfAbsent(Contact contact) {
+        long start = System.nanoTime();
+        String key = ContactIndex.fold(contact.getName());
+        lock(key);
+        try {
+            if (byName.containsKey(key)) {
+                return false;
+            }
+            insert(key, contact);
+            return true;
+        } finally {
+            unlock(key);
+            ContactMetrics.ADD.recordSince(start);
+        }
+    }
+
+    private void insert(String key, Contact contact) {
+        record(contact, true);
+        Entry entry = new Entry(sequence.incrementAndGet(), contact);
+        order.put(entry.sequence, contact);
+        Entry[] matches = byName.getOrDefault(key, NO_ENTRIES);
+        byName.put(key, append(matches, entry));
+        if (matches.length == 0) {
+            sortedNames.add(key);
+        }
+        // inside compute, so a remove can't drop the set between finding it and adding to it
+        byPhone.compute(ContactIndex.normalizePhone(contact.getPhoneNumber()), (phone, entries) -> {
+            ConcurrentSkipListSet<Entry> set = entries == null ? new ConcurrentSkipListSet<>(IN_ORDER) : entries;
+            set.add(entry);
+            return set;
+        });
+        size.incrementAndGet();
+        for (Listener listener : listeners) {
+            listener.added(contact);
+        }
+    }
+
+    @Override
+    public Contact removeByName(String name) {
+        long start = System.nanoTime();
+        String key = ContactIndex.fold(name);
+        lock(key);
+        try {
+            Entry[] matches = byName.get(key);
+            if (matches == null) {
+                return null;
+            }
+            Entry removed = matches[0];
+            record(removed.contact, false);
+            if (matches.length == 1) {
+                sortedNames.remove(key);
+                byName.remove(key);
+            } else {
+                byName.put(key, Arrays.copyOfRange(matches, 1, matches.length));
+            }
+            byPhone.computeIfPresent(ContactIndex.normalizePhone(removed.contact.getPhoneNumber()),
+                    (phone, entries) -> {
+                        entries.remove(removed);
+                        return entries.isEmpty() ? null : entries;
+                    });
+            order.remove(removed.sequence);
+            size.decrementAndGet();
+            for (Listener listener : listeners) {
+                listener.removed(removed.contact);
+            }
+            return removed.contact;
+        } finally {
+            unlock(key);
+            ContactMetrics.DELETE.recordSince(start);
+        }
+    }
+
+    private void lock(String key) {
+        writeGate.readLock().lock();
+        stripe(key).lock();
+    }
+
+    private void unlock(String key) {
+        stripe(key).unlock();
+        writeGate.readLock().unlock();
+    }
+
+    // runs action with no add or remove in progress, for a point-in-time view of the store
+    public <T> T withWritesPaused(Supplier<T> action) {
+        writeGate.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            writeGate.writeLock().unlock();
+        }
+    }
+
+    private static Entry[] append(Entry[] entries, Entry entry) {
+        Entry[] result = Arrays.copyOf(entries, entries.length + 1);
+        result[entries.length] = entry;
+        return result;
+    }
+
+    private static List<Contact> contacts(Entry[] entries) {
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        List<Contact> contacts = new ArrayList<>(entries.length);
+        for (Entry entry : entries) {
+            contacts.add(entry.contact);
+        }
+        return contacts;
+    }
+
+    private static List<Contact> contacts(Set<Entry> entries) {
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        List<Contact> contacts = new ArrayList<>();
+        for (Entry entry : entries) {
+            contacts.add(entry.contact);
+        }
+        return contacts;
+    }
+
+    @Override
+    public boolean containsName(String name) {
+        return byName.containsKey(ContactIndex.fold(name));
+    }
+
+    @Override
+    public List<Contact> findByName(String name) {
+        long start = System.nanoTime();
+        List<Contact> matches = contacts(byName.get(ContactIndex.fold(name)));
+        ContactMetrics.SEARCH_NAME.recordSince(start);
+        return matches;
+    }
+
+    // up to limit contacts whose name starts with prefix, in name order
+    @Override
+    public List<Contact> findByNamePrefix(String prefix, int limit) {
+        long start = System.nanoTime();
+        List<Contact> matches = new ArrayList<>();
+        String folded = ContactIndex.fold(prefix);
+        for (String key : sortedNames.tailSet(folded)) {
+            if (!key.startsWith(folded)) {
+                break;
+            }
+            Entry[] entries = byName.get(key);
+            if (entries == null) {
+                // removed since the key was read
+                continue;
+            }
+            for (Entry entry : entries) {
+                if (matches.size() == limit) {
+                    ContactMetrics.SEARCH_PREFIX.recordSince(start);
+                    return matches;
+                }
+                matches.add(entry.contact);
+            }
+        }
+        ContactMetrics.SEARCH_PREFIX.recordSince(start);
+        return matches;
+    }
+
+    @Override
+    public List<Contact> findByPhoneNumber(String phoneNumber) {
+        long start = System.nanoTime();
+        List<Contact> matches = contacts(byPhone.get(ContactIndex.normalizePhone(phoneNumber)));
+        ContactMetrics.SEARCH_PHONE.recordSince(start);
+        return matches;
+    }
+
+    @Override
+    public List<Contact> snapshot() {
+        return new ArrayList<>(order.values());
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public Iterator<Contact> iterator() {
+        return Collections.unmodifiableCollection(order.values()).iterator();
+    }
+}
@@ -1,6 +1,6 @@
 package contactManager;
 
-class Contact {
+public class Contact {
     private String name;
     private String phoneNumber;
     public Contact(String name, String phoneNumber) {
@@ -0,0 +1,186 @@
+package contactManager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Non-interactive import and export.
+//
+// Import streams rows through read -> validate -> duplicate check -> insert, one thread per stage.
+// Stages hand over batches of rows through bounded queues, so a slow stage holds back the reader
+// instead of letting rows pile up in memory. Rejected rows go to a side file with the reason.
+class ContactBatch {
+    private static final String DELIMITER = ",";
+    private static final int BATCH_SIZE = 1000;
+    // batches in flight between two stages
+    private static final int QUEUE_CAPACITY = 16;
+    private static final List<Row> END = Collections.emptyList();
+    private static final int STAGES = 4;
+
+    private static class Row {
+        final long lineNumber;
+        final String line;
+        String name;
+        String phoneNumber;
+
+        Row(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+    }
+
+    static class ImportResult {
+        final long imported;
+        final long rejected;
+
+        ImportResult(long imported, long rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+    }
+
+    // rejected rows are written to rejectedPath as "line number,reason,row"
+    static ImportResult importContacts(ContactStore contacts, Path source, Path rejectedPath) throws IOException {
+        BlockingQueue<List<Row>> read = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<List<Row>> valid = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<List<Row>> unique = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicLong imported = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        ExecutorService stages = Executors.newFixedThreadPool(STAGES);
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectedPath, StandardCharsets.UTF_8)) {
+            ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(stages);
+            completion.submit(() -> {
+                readRows(reader, read);
+                return null;
+            });
+            completion.submit(stage(read, valid, ContactBatch::validate, rejects, rejected));
+            completion.submit(stage(valid, unique,
+                    row -> contacts.containsName(row.name) ? "duplicate name" : null, rejects, rejected));
+            completion.submit(stage(unique, null, row -> {
+                // another row or another writer may have taken the name since the check
+                if (!contacts.addIfAbsent(new Contact(row.name, row.phoneNumber))) {
+                    return "duplicate name";
+                }
+                imported.incrementAndGet();
+                return null;
+            }, rejects, rejected));
+            for (int i = 0; i < STAGES; i++) {
+                completion.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            // the store couldn't journal a row, and refuses the rest
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException("Import failed", e.getCause());
+        } finally {
+            // a failed stage would leave the others blocked on their queues
+            stages.shutdownNow();
+        }
+        return new ImportResult(imported.get(), rejected.get());
+    }
+
+    private static void readRows(BufferedReader reader, BlockingQueue<List<Row>> out)
+            throws IOException, InterruptedException {
+        List<Row> batch = new ArrayList<>(BATCH_SIZE);
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            batch.add(new Row(++lineNumber, line));
+            if (batch.size() == BATCH_SIZE) {
+                out.put(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            out.put(batch);
+        }
+        out.put(END);
+    }
+
+    // check returns why a row is rejected, or null to pass it on
+    private static Callable<Void> stage(BlockingQueue<List<Row>> in, BlockingQueue<List<Row>> out,
+                                        Function<Row, String> check, BufferedWriter rejects, AtomicLong rejected) {
+        return () -> {
+            List<Row> batch;
+            while ((batch = in.take()) != END) {
+                List<Row> passed = new ArrayList<>(batch.size());
+                for (Row row : batch) {
+                    String reason = check.apply(row);
+                    if (reason == null) {
+                        passed.add(row);
+                    } else {
+                        rejected.incrementAndGet();
+                        synchronized (rejects) {
+                            rejects.write(row.lineNumber + DELIMITER + reason + DELIMITER + row.line);
+                            rejects.newLine();
+                        }
+                    }
+                }
+                if (out != null && !passed.isEmpty()) {
+                    out.put(passed);
+                }
+            }
+            if (out != null) {
+                out.put(END);
+            }
+            return null;
+        };
+    }
+
+    // a row must split like a contacts file line; the name is trimmed as the menu does and must not be empty
+    private static String validate(Row row) {
+        String[] parts = row.line.split(DELIMITER);
+        if (parts.length != 2) {
+            return "malformed row";
+        }
+        row.name = parts[0].trim();
+        row.phoneNumber = parts[1];
+        if (row.name.isEmpty()) {
+            return "missing name";
+        }
+        if (!ContactManager.validPhoneNumber(row.phoneNumber)) {
+            ContactMetrics.VALIDATION_FAILURES.increment();
+            return "invalid phone number";
+        }
+        return null;
+    }
+
+    // streams the contacts straight to the file, in insertion order
+    static long exportContacts(ContactStore contacts, Path target) throws IOException {
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            for (Contact contact : contacts) {
+                writer.write(contact.getName());
+                writer.write(DELIMITER);
+                writer.write(contact.getPhoneNumber());
+                writer.newLine();
+                written++;
+            }
+        }
+        return written;
+    }
+}
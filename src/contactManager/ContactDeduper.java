@@ -0,0 +1,294 @@
+package contactManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+// Finds groups of contacts that share a phone number (digits only) or a name (trimmed and
+// case-folded), following chains: if a shares a phone with b and b a name with c, all three group.
+//
+// Contacts are numbered in iteration order and grouped in a union-find over those numbers, the
+// only per-contact memory. Keys are hash-partitioned; when there are more than PARTITION_KEYS they
+// are spilled to one file per partition and each partition is grouped in memory on its own, so
+// the keys never all have to fit in the heap. Every step is a pass over the contacts or the keys.
+//
+// The groups are only a report: a shared phone number may be a household or an office, and a chain
+// can link people with nothing in common. A merge drops just the contacts whose name an earlier
+// contact already has, found in the same pass, and never follows a chain. The contacts must be
+// iterable more than once, in the same order each time.
+class ContactDeduper {
+    private static final String DELIMITER = ",";
+    private static final int PARTITION_KEYS = Integer.getInteger("contacts.dedupe.partitionKeys", 1 << 20);
+    private static final char NAME_KEY = 'n';
+    private static final char PHONE_KEY = 'p';
+
+    // parent[i] < i except at a root, so each root is the first contact of its group
+    private int[] parent;
+    private int rows;
+    // roots of groups with more than one contact
+    private final BitSet grouped = new BitSet();
+    // contacts whose name an earlier contact already has, the ones a merge drops
+    private final BitSet repeatedName = new BitSet();
+
+    private ContactDeduper(long expectedRows) {
+        parent = new int[(int) Math.min(Math.max(expectedRows, 16), Integer.MAX_VALUE - 8)];
+    }
+
+    // expectedRows only sizes the partitions, a wrong guess costs memory or extra files
+    static ContactDeduper group(Iterable<Contact> contacts, long expectedRows) throws IOException {
+        ContactDeduper deduper = new ContactDeduper(expectedRows);
+        int partitions = (int) Math.min(1024, Math.max(1, 2 * expectedRows / PARTITION_KEYS + 1));
+        if (partitions == 1) {
+            Map<String, Integer> firstRow = new HashMap<>();
+            for (Contact contact : contacts) {
+                int row = deduper.newRow();
+                deduper.key(firstRow, nameKey(contact), row);
+                String phoneKey = phoneKey(contact);
+                if (phoneKey != null) {
+                    deduper.key(firstRow, phoneKey, row);
+                }
+            }
+        } else {
+            deduper.groupSpilled(contacts, partitions);
+        }
+        return deduper;
+    }
+
+    private void groupSpilled(Iterable<Contact> contacts, int partitions) throws IOException {
+        Path spillDir = Files.createTempDirectory("contacts-dedupe");
+        try {
+            DataOutputStream[] spills = new DataOutputStream[partitions];
+            try {
+                for (int p = 0; p < partitions; p++) {
+                    spills[p] = new DataOutputStream(new BufferedOutputStream(
+                            Files.newOutputStream(spillDir.resolve(p + ".keys")), 1 << 16));
+                }
+                for (Contact contact : contacts) {
+                    int row = newRow();
+                    spill(spills, nameKey(contact), row);
+                    String phoneKey = phoneKey(contact);
+                    if (phoneKey != null) {
+                        spill(spills, phoneKey, row);
+                    }
+                }
+            } finally {
+                for (DataOutputStream spill : spills) {
+                    if (spill != null) {
+                        spill.close();
+                    }
+                }
+            }
+            // a key only ever lands in one partition, so each can be grouped without the others
+            for (int p = 0; p < partitions; p++) {
+                Map<String, Integer> firstRow = new HashMap<>();
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        Files.newInputStream(spillDir.resolve(p + ".keys")), 1 << 16))) {
+                    while (true) {
+                        int length;
+                        try {
+                            length = in.readInt();
+                        } catch (EOFException e) {
+                            break;
+                        }
+                        byte[] bytes = new byte[length];
+                        in.readFully(bytes);
+                        key(firstRow, new String(bytes, StandardCharsets.UTF_8), in.readInt());
+                    }
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(spillDir)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // length-prefixed rather than writeUTF, which can't take keys over 65535 bytes
+    private static void spill(DataOutputStream[] spills, String key, int row) throws IOException {
+        DataOutputStream spill = spills[(key.hashCode() & Integer.MAX_VALUE) % spills.length];
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        spill.writeInt(bytes.length);
+        spill.write(bytes);
+        spill.writeInt(row);
+    }
+
+    private static String nameKey(Contact contact) {
+        return NAME_KEY + ContactIndex.normalizeName(contact.getName());
+    }
+
+    // null when there are no digits, an empty number isn't shared with anyone
+    private static String phoneKey(Contact contact) {
+        String digits = ContactIndex.normalizePhone(contact.getPhoneNumber());
+        return digits.isEmpty() ? null : PHONE_KEY + digits;
+    }
+
+    private int newRow() {
+        if (rows == parent.length) {
+            parent = Arrays.copyOf(parent, (int) Math.min((long) rows * 2, Integer.MAX_VALUE - 8));
+        }
+        parent[rows] = rows;
+        return rows++;
+    }
+
+    private void key(Map<String, Integer> firstRow, String key, int row) {
+        Integer first = firstRow.putIfAbsent(key, row);
+        if (first != null) {
+            union(first, row);
+            if (key.charAt(0) == NAME_KEY) {
+                repeatedName.set(row);
+            }
+        }
+    }
+
+    private int find(int row) {
+        while (parent[row] != row) {
+            // path halving
+            parent[row] = parent[parent[row]];
+            row = parent[row];
+        }
+        return row;
+    }
+
+    // the later root goes under the earlier one
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        int root = Math.min(rootA, rootB);
+        parent[Math.max(rootA, rootB)] = root;
+        grouped.set(root);
+        grouped.clear(Math.max(rootA, rootB));
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    long groups() {
+        return grouped.cardinality();
+    }
+
+    // contacts a merge drops, all but the first with each name
+    long duplicates() {
+        return repeatedName.cardinality();
+    }
+
+    // one "group,name,phone" line per grouped contact, in contact order. group is the number of the
+    // group's first contact, counting from 1, so sorting the file on it lists each group together.
+    void writeReport(Iterable<Contact> contacts, Path reportPath) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8)) {
+            int row = 0;
+            for (Contact contact : contacts) {
+                if (row == rows) {
+                    break;
+                }
+                int root = find(row++);
+                if (grouped.get(root)) {
+                    writer.write((root + 1) + DELIMITER + contact.getName() + DELIMITER + contact.getPhoneNumber());
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    // the contacts with each name kept only on its first contact, read lazily
+    Iterable<Contact> merged(Iterable<Contact> contacts) {
+        return () -> new Iterator<Contact>() {
+            private final Iterator<Contact> source = contacts.iterator();
+            private int row;
+            private Contact next = advance();
+
+            private Contact advance() {
+                while (row < rows && source.hasNext()) {
+                    Contact contact = source.next();
+                    if (!repeatedName.get(row++)) {
+                        return contact;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Contact next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Contact contact = next;
+                next = advance();
+                return contact;
+            }
+        };
+    }
+
+    // contacts file lines read one at a time on each iteration, split as loadContactsFromFile does
+    static Iterable<Contact> fileContacts(Path path) {
+        return () -> {
+            BufferedReader reader;
+            try {
+                reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Iterator<Contact>() {
+                private Contact next = advance();
+
+                private Contact advance() {
+                    try {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            String[] parts = line.split(DELIMITER);
+                            if (parts.length == 2) {
+                                return new Contact(parts[0], parts[1]);
+                            }
+                        }
+                        reader.close();
+                        return null;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Contact next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Contact contact = next;
+                    next = advance();
+                    return contact;
+                }
+            };
+        };
+    }
+}
@@ -0,0 +1,199 @@
+package contactManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Loads a contacts file by memory-mapping it and parsing newline-aligned chunks in parallel.
+// Lines follow the same rule as ContactManager.loadContactsFromFile: a line is kept only
+// when String.split(",") would give exactly 2 parts.
+class ContactFileLoader {
+    private static final byte DELIMITER = ',';
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    // a single mapping can't be larger than Integer.MAX_VALUE
+    private static final long MAX_CHUNK_SIZE = 256L << 20;
+
+    private final ForkJoinPool pool;
+
+    ContactFileLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    ContactFileLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // contacts in file order
+    List<Contact> load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            List<List<Contact>> chunks;
+            try {
+                chunks = pool.invoke(new ChunkTask(channel, bounds, 0, bounds.length - 1));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            List<Contact> contacts = new ArrayList<>();
+            for (List<Contact> chunk : chunks) {
+                contacts.addAll(chunk);
+            }
+            return contacts;
+        }
+    }
+
+    // start offsets of each chunk, each one just past a '\n', followed by the file size
+    private long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long target = Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4L));
+        target = Math.min(target, MAX_CHUNK_SIZE);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start + target < size) {
+            long end = nextLineStart(channel, start + target, probe);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line too long near offset " + start);
+            }
+            bounds.add(end);
+            start = end;
+        }
+        if (start < size) {
+            bounds.add(size);
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        long size = channel.size();
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static class ChunkTask extends RecursiveTask<List<List<Contact>>> {
+        private static final long serialVersionUID = 1L;
+
+        // tasks only live for one load, they are never serialized
+        private final transient FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, long[] bounds, int from, int to) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<List<Contact>> compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                ChunkTask left = new ChunkTask(channel, bounds, from, mid);
+                ChunkTask right = new ChunkTask(channel, bounds, mid, to);
+                left.fork();
+                List<List<Contact>> result = new ArrayList<>(right.compute());
+                result.addAll(0, left.join());
+                return result;
+            }
+            List<List<Contact>> result = new ArrayList<>(1);
+            if (to > from) {
+                try {
+                    MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                            bounds[from], bounds[to] - bounds[from]);
+                    result.add(parse(chunk));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return result;
+        }
+    }
+
+    // a line ends at "\n", "\r\n" or "\r", the same as Files.readAllLines
+    static List<Contact> parse(ByteBuffer chunk) {
+        List<Contact> contacts = new ArrayList<>();
+        int skipped = 0;
+        int limit = chunk.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && chunk.get(lineEnd) != '\n' && chunk.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            Contact contact = parseLine(chunk, lineStart, lineEnd);
+            if (contact != null) {
+                contacts.add(contact);
+            } else {
+                skipped++;
+            }
+            lineStart = lineEnd + 1;
+            if (lineEnd < limit && chunk.get(lineEnd) == '\r' && lineStart < limit && chunk.get(lineStart) == '\n') {
+                lineStart++;
+            }
+        }
+        ContactMetrics.LINES_SKIPPED.add(skipped);
+        return contacts;
+    }
+
+    // String.split drops trailing empty fields, so "a,b" and "a,b,," both give 2 parts:
+    // the second field must be non-empty and everything after it must be delimiters
+    private static Contact parseLine(ByteBuffer chunk, int start, int end) {
+        int first = indexOf(chunk, DELIMITER, start, end);
+        if (first < 0) {
+            return null;
+        }
+        int second = indexOf(chunk, DELIMITER, first + 1, end);
+        int phoneEnd = second < 0 ? end : second;
+        if (phoneEnd == first + 1) {
+            return null;
+        }
+        for (int i = phoneEnd; i < end; i++) {
+            if (chunk.get(i) != DELIMITER) {
+                return null;
+            }
+        }
+        return new Contact(decode(chunk, start, first), decode(chunk, first + 1, phoneEnd));
+    }
+
+    private static int indexOf(ByteBuffer chunk, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (chunk.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decode(ByteBuffer chunk, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        chunk.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
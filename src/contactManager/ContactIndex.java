@@ -0,0 +1,126 @@
+package contactManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Contact store with a case-folded name index, so lookups don't scan every contact
+public class ContactIndex implements ContactStore {
+    // insertion order for viewing and saving, removal by identity is O(1)
+    private final Set<Contact> contacts = new LinkedHashSet<>();
+    // folded name -> contacts with that name, in insertion order
+    private final Map<String, List<Contact>> byName = new HashMap<>();
+    // the same folded names kept sorted, for prefix search
+    private final TreeSet<String> sortedNames = new TreeSet<>();
+    // digits of the phone number -> contacts sharing it, for reverse lookups
+    private final Map<String, Set<Contact>> byPhone = new HashMap<>();
+
+    static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // trimmed and folded, so "mark " and "Mark" are the same name
+    static String normalizeName(String name) {
+        return fold(name.trim());
+    }
+
+    // keeps only the digits, so "(123) 456-7890" finds 1234567890
+    static String normalizePhone(String phoneNumber) {
+        StringBuilder digits = new StringBuilder(phoneNumber.length());
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (Character.isDigit(c)) {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    public void add(Contact contact) {
+        contacts.add(contact);
+        String key = fold(contact.getName());
+        List<Contact> matches = byName.get(key);
+        if (matches == null) {
+            matches = new ArrayList<>(1);
+            byName.put(key, matches);
+            sortedNames.add(key);
+        }
+        matches.add(contact);
+        byPhone.computeIfAbsent(normalizePhone(contact.getPhoneNumber()), k -> new LinkedHashSet<>()).add(contact);
+    }
+
+    public boolean containsName(String name) {
+        return byName.containsKey(fold(name));
+    }
+
+    public List<Contact> findByName(String name) {
+        List<Contact> matches = byName.get(fold(name));
+        return matches == null ? Collections.emptyList() : Collections.unmodifiableList(matches);
+    }
+
+    // up to limit contacts whose name starts with prefix, in name order
+    public List<Contact> findByNamePrefix(String prefix, int limit) {
+        List<Contact> matches = new ArrayList<>();
+        String folded = fold(prefix);
+        for (String key : sortedNames.tailSet(folded)) {
+            if (!key.startsWith(folded)) {
+                break;
+            }
+            for (Contact contact : byName.get(key)) {
+                if (matches.size() == limit) {
+                    return matches;
+                }
+                matches.add(contact);
+            }
+        }
+        return matches;
+    }
+
+    public List<Contact> findByPhoneNumber(String phoneNumber) {
+        Set<Contact> matches = byPhone.get(normalizePhone(phoneNumber));
+        return matches == null ? Collections.emptyList() : new ArrayList<>(matches);
+    }
+
+    // removes the first contact added under this name, or returns null if there is none
+    public Contact removeByName(String name) {
+        String key = fold(name);
+        List<Contact> matches = byName.get(key);
+        if (matches == null) {
+            return null;
+        }
+        Contact removed = matches.remove(0);
+        if (matches.isEmpty()) {
+            byName.remove(key);
+            sortedNames.remove(key);
+        }
+        String phoneKey = normalizePhone(removed.getPhoneNumber());
+        Set<Contact> samePhone = byPhone.get(phoneKey);
+        samePhone.remove(removed);
+        if (samePhone.isEmpty()) {
+            byPhone.remove(phoneKey);
+        }
+        contacts.remove(removed);
+        return removed;
+    }
+
+    // copy in insertion order
+    public List<Contact> snapshot() {
+        return new ArrayList<>(contacts);
+    }
+
+    public int size() {
+        return contacts.size();
+    }
+
+    @Override
+    public Iterator<Contact> iterator() {
+        return Collections.unmodifiableSet(contacts).iterator();
+    }
+}
@@ -0,0 +1,397 @@
+package contactManager;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Write-ahead journal of adds and deletes, replayed over the contacts file on startup.
+//
+// Records are buffered and appended in groups. Once the journal passes compactBytes a background
+// thread pauses writes to the store, renames the journal to <file>.journal.compacting, takes a
+// snapshot and, with writes running again, writes it to <file>.tmp.
+// Deleting the .compacting file is the commit point; the .tmp file is then moved over the
+// contacts file. recover() redoes or finishes a compaction that was cut short.
+//
+// Only one process at a time may use the files: lock() takes <file>.lock, and it is held until
+// close(). Two processes appending to, rotating and compacting the same journal would each write
+// the contacts file over the other's changes.
+//
+// Once a write fails every later record is refused, so the store stops taking changes rather than
+// keep ones that would be lost. Under GROUP and NEVER a record is acknowledged before it is written,
+// so a failed background flush can only refuse the changes after it.
+class ContactJournal implements ConcurrentContactStore.ChangeLog {
+    private static final String ADD = "A";
+    private static final String DELETE = "D";
+    private static final String DELIMITER = ",";
+
+    enum FsyncPolicy {
+        // leave it to the OS
+        NEVER,
+        // fsync after each group is written
+        GROUP,
+        // write and fsync every record before returning
+        ALWAYS
+    }
+
+    private final Path basePath;
+    private final Path journalPath;
+    private final Path compactingPath;
+    private final Path tmpPath;
+    private final Path lockPath;
+    private final FsyncPolicy fsyncPolicy;
+    private final int groupSize;
+    private final long compactBytes;
+
+    // guards the records and the stream. Not synchronized: records are written from the server's
+    // virtual threads, and on JDK 21 one waiting on a monitor pins its carrier, so a single fsync
+    // could hold up every carrier
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingRecords;
+    // a plain stream rather than a FileChannel: an interrupt on whichever thread is flushing would
+    // close a channel for good, and every later record would fail
+    private FileOutputStream out;
+    private long journalBytes;
+    private IOException failure;
+    private ConcurrentContactStore store;
+    private ScheduledExecutorService flusher;
+    private ExecutorService compactor;
+    private Future<?> compaction;
+    // nothing is read or written through it, so an interrupt can't close it and drop the lock
+    private FileChannel lockFile;
+    private FileLock lock;
+
+    ContactJournal(Path basePath) {
+        this(basePath,
+                FsyncPolicy.valueOf(System.getProperty("contacts.journal.fsync", FsyncPolicy.GROUP.name())),
+                Integer.getInteger("contacts.journal.groupSize", 64),
+                Long.getLong("contacts.journal.compactBytes", 4L << 20));
+    }
+
+    ContactJournal(Path basePath, FsyncPolicy fsyncPolicy, int groupSize, long compactBytes) {
+        this.basePath = basePath;
+        this.journalPath = basePath.resolveSibling(basePath.getFileName() + ".journal");
+        this.compactingPath = basePath.resolveSibling(basePath.getFileName() + ".journal.compacting");
+        this.tmpPath = basePath.resolveSibling(basePath.getFileName() + ".tmp");
+        this.lockPath = basePath.resolveSibling(basePath.getFileName() + ".lock");
+        this.fsyncPolicy = fsyncPolicy;
+        this.groupSize = groupSize;
+        this.compactBytes = compactBytes;
+    }
+
+    // takes the files for this process until close(), false if another process has them
+    boolean lock() throws IOException {
+        if (lock != null) {
+            return true;
+        }
+        FileChannel file = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock taken;
+        try {
+            taken = file.tryLock();
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+        if (taken == null) {
+            file.close();
+            return false;
+        }
+        lockFile = file;
+        lock = taken;
+        return true;
+    }
+
+    private void checkLocked() throws IOException {
+        if (lock == null) {
+            throw new IOException("Contacts file is not locked");
+        }
+    }
+
+    // call after lock() and before reading the contacts file
+    void recover() throws IOException {
+        checkLocked();
+        if (Files.exists(compactingPath)) {
+            // the snapshot may be incomplete, so fold the .compacting records into the contacts file again
+            ContactIndex contacts = new ContactIndex();
+            if (Files.exists(basePath)) {
+                for (Contact contact : new ContactFileLoader().load(basePath)) {
+                    contacts.add(contact);
+                }
+            }
+            replay(compactingPath, contacts);
+            compact(contacts.snapshot());
+        } else if (Files.exists(tmpPath)) {
+            Files.move(tmpPath, basePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        truncateTornRecord(journalPath);
+    }
+
+    // whether the contacts file alone is out of date
+    boolean hasRecords() throws IOException {
+        return Files.exists(journalPath) && Files.size(journalPath) > 0;
+    }
+
+    // applies the journal over contacts loaded from the contacts file
+    void replay(ContactStore contacts) throws IOException {
+        replay(journalPath, contacts);
+    }
+
+    private static void replay(Path path, ContactStore contacts) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        for (String record : Files.readAllLines(path)) {
+            if (record.startsWith(ADD + DELIMITER)) {
+                // the phone number is digits, so the last delimiter separates it from the name
+                int split = record.lastIndexOf(DELIMITER);
+                if (split > ADD.length()) {
+                    contacts.add(new Contact(record.substring(ADD.length() + 1, split), record.substring(split + 1)));
+                }
+            } else if (record.startsWith(DELETE + DELIMITER)) {
+                contacts.removeByName(record.substring(DELETE.length() + 1));
+            }
+        }
+    }
+
+    // a crash mid-append can leave a partial last line, which would corrupt the next record
+    private static void truncateTornRecord(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = file.size();
+            ByteBuffer b = ByteBuffer.allocate(1);
+            while (end > 0) {
+                b.clear();
+                file.read(b, end - 1);
+                if (b.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            file.truncate(end);
+        }
+    }
+
+    // starts appending; store is what gets written back to the contacts file on compaction
+    void open(ConcurrentContactStore store, long flushMillis) throws IOException {
+        appendLock.lock();
+        try {
+            checkLocked();
+            this.store = store;
+            openJournal();
+            store.setChangeLog(this);
+            flusher = Executors.newSingleThreadScheduledExecutor(daemon("contacts-journal-flush"));
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+            compactor = Executors.newSingleThreadExecutor(daemon("contacts-journal-compact"));
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    void open(ConcurrentContactStore store) throws IOException {
+        open(store, Long.getLong("contacts.journal.flushMillis", 200));
+    }
+
+    @Override
+    public void recordAdd(Contact contact) throws IOException {
+        append(ADD + DELIMITER + contact.getName() + DELIMITER + contact.getPhoneNumber());
+    }
+
+    @Override
+    public void recordDelete(Contact contact) throws IOException {
+        append(DELETE + DELIMITER + contact.getName());
+    }
+
+    private void append(String record) throws IOException {
+        appendLock.lock();
+        try {
+            if (out == null) {
+                throw new IOException("Journal is not open");
+            }
+            if (failure != null) {
+                throw new IOException("Journal failed earlier", failure);
+            }
+            pending.append(record).append('\n');
+            pendingRecords++;
+            if (fsyncPolicy == FsyncPolicy.ALWAYS || pendingRecords >= groupSize) {
+                flush();
+            }
+            if (journalBytes >= compactBytes && (compaction == null || compaction.isDone())) {
+                compaction = compactor.submit(this::compactInBackground);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    void flush() throws IOException {
+        appendLock.lock();
+        try {
+            if (pendingRecords == 0) {
+                return;
+            }
+            byte[] bytes = pending.toString().getBytes(StandardCharsets.UTF_8);
+            try {
+                out.write(bytes);
+                if (fsyncPolicy != FsyncPolicy.NEVER) {
+                    out.getFD().sync();
+                }
+            } catch (IOException e) {
+                // part of the group may be on disk already, writing it again could repeat records.
+                // recover() trims a torn last record.
+                failure = e;
+                pending.setLength(0);
+                pendingRecords = 0;
+                throw e;
+            }
+            journalBytes += bytes.length;
+            pending.setLength(0);
+            pendingRecords = 0;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.out.println("Error writing contacts journal.");
+        }
+    }
+
+    private void compactInBackground() {
+        if (Files.exists(compactingPath)) {
+            // an earlier compaction failed, it is redone by recover() on the next start
+            return;
+        }
+        try {
+            // writers journal while they still hold the store, so with writes paused every change
+            // in the snapshot is in the rotated journal and none is in the new one
+            List<Contact> contacts = store.withWritesPaused(this::rotate);
+            compact(contacts);
+        } catch (IOException | UncheckedIOException e) {
+            // the .compacting records stay on disk and are folded in on the next start
+            System.out.println("Error compacting contacts journal.");
+        }
+    }
+
+    private List<Contact> rotate() {
+        appendLock.lock();
+        try {
+            try {
+                flush();
+                out.getFD().sync();
+                out.close();
+                Files.move(journalPath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+                openJournal();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return store.snapshot();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // replaces the contacts file with contacts, which must already include every journaled change,
+    // and empties the journal. Same commit point as a compaction. Call with the journal closed.
+    void rewrite(Iterable<Contact> contacts) throws IOException {
+        checkLocked();
+        if (Files.exists(journalPath)) {
+            Files.move(journalPath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Files.createFile(compactingPath);
+        }
+        compact(contacts);
+    }
+
+    private void compact(Iterable<Contact> contacts) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel file = FileChannel.open(tmpPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             BufferedWriter writer = new BufferedWriter(Channels.newWriter(file, StandardCharsets.UTF_8))) {
+            for (Contact contact : contacts) {
+                writer.write(contact.getName() + DELIMITER + contact.getPhoneNumber());
+                writer.newLine();
+            }
+            writer.flush();
+            file.force(true);
+        }
+        Files.delete(compactingPath);
+        Files.move(tmpPath, basePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        ContactMetrics.COMPACTION.recordSince(start);
+    }
+
+    // flushes and fsyncs what is pending, waits for a running compaction and gives up the lock
+    // call once writes to the store have stopped; later calls do nothing
+    void close() throws IOException {
+        try {
+            if (compactor == null) {
+                return;
+            }
+            // not shutdownNow(), a flush in progress must not be interrupted
+            flusher.shutdown();
+            compactor.shutdown();
+            try {
+                flusher.awaitTermination(1, TimeUnit.MINUTES);
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            appendLock.lock();
+            try {
+                flush();
+                out.getFD().sync();
+                out.close();
+                compactor = null;
+            } finally {
+                appendLock.unlock();
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    private void unlock() throws IOException {
+        if (lock == null) {
+            return;
+        }
+        lock = null;
+        // closing the channel releases the lock
+        lockFile.close();
+        lockFile = null;
+    }
+
+    private void openJournal() throws IOException {
+        out = new FileOutputStream(journalPath.toFile(), true);
+        journalBytes = Files.size(journalPath);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
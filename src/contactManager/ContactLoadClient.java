@@ -0,0 +1,133 @@
+package contactManager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Drives a running ContactServer with many concurrent clients and checks every reply.
+// Usage: ContactLoadClient <port> [clients] [requests per client]
+public class ContactLoadClient {
+    private static final String DELIMITER = ",";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: ContactLoadClient <port> [clients] [requests per client]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        if (!run(port, clients, requests)) {
+            System.exit(1);
+        }
+    }
+
+    // true when every reply was well formed and every client's own adds and deletes were seen back
+    static boolean run(int port, int clients, int requests) throws Exception {
+        long start = System.nanoTime();
+        List<Future<long[]>> results = new ArrayList<>(clients);
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                int client = i;
+                results.add(threads.submit(() -> runClient(port, client, requests)));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] latencies = new long[clients * requests];
+        int failedClients = 0;
+        int n = 0;
+        for (Future<long[]> result : results) {
+            try {
+                long[] clientLatencies = result.get();
+                System.arraycopy(clientLatencies, 0, latencies, n, clientLatencies.length);
+                n += clientLatencies.length;
+            } catch (Exception e) {
+                failedClients++;
+                if (failedClients == 1) {
+                    System.out.println("Client failed: " + e.getCause());
+                }
+            }
+        }
+        Arrays.sort(latencies, 0, n);
+        System.out.println(clients + " clients, " + n + " requests in " + elapsed / 1_000_000 + " ms ("
+                + (long) (n / (elapsed / 1e9)) + " requests/s)");
+        if (n > 0) {
+            System.out.println("latency us: p50 " + latencies[n / 2] / 1000
+                    + ", p99 " + latencies[(int) (n * 0.99)] / 1000
+                    + ", max " + latencies[n - 1] / 1000);
+        }
+        System.out.println("failed clients: " + failedClients);
+        return failedClients == 0;
+    }
+
+    // each client adds, finds and deletes its own contact, mixed with phone and prefix lookups
+    private static long[] runClient(int port, int client, int requests) throws IOException {
+        long[] latencies = new long[requests];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            String name = "load-" + client;
+            String phoneNumber = String.format("%010d", client);
+            for (int i = 0; i < requests; i++) {
+                String request;
+                int expected;
+                switch (i % 4) {
+                    case 0:
+                        request = "ADD " + name + DELIMITER + phoneNumber;
+                        expected = 0;
+                        break;
+                    case 1:
+                        request = "FIND " + name;
+                        expected = 1;
+                        break;
+                    case 2:
+                        request = random.nextBoolean() ? "PHONE " + phoneNumber : "PREFIX load-";
+                        expected = -1;
+                        break;
+                    default:
+                        request = "DELETE " + name;
+                        expected = 1;
+                }
+                long sent = System.nanoTime();
+                out.write(request);
+                out.write('\n');
+                out.flush();
+                int count = readReply(in, request);
+                latencies[i] = System.nanoTime() - sent;
+                if (expected >= 0 && count != expected) {
+                    throw new IOException("Expected " + expected + " contacts for " + request + ", got " + count);
+                }
+            }
+        }
+        return latencies;
+    }
+
+    private static int readReply(BufferedReader in, String request) throws IOException {
+        String status = in.readLine();
+        if (status == null || !status.startsWith("OK ")) {
+            throw new IOException("Bad reply to " + request + ": " + status);
+        }
+        int count = Integer.parseInt(status.substring(3));
+        for (int i = 0; i < count; i++) {
+            if (in.readLine() == null) {
+                throw new IOException("Reply to " + request + " was cut short");
+            }
+        }
+        return count;
+    }
+}
@@ -5,28 +5,165 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class ContactManager {
     // fields
     private static final Path FILE_PATH = Paths.get("contacts.txt");
+    private static final Path DUPLICATES_PATH = Paths.get("contacts.txt.duplicates");
+    // for sizing work before a file is read
+    private static final int AVERAGE_LINE_BYTES = 24;
     private static final String DELIMITER = ",";
     private static final Scanner scanner = new Scanner(System.in);
+    private static final int PREFIX_SEARCH_LIMIT = 10;
+    private static final int FUZZY_SEARCH_LIMIT = 10;
+    private static final int PAGE_SIZE = 20;
+    private static final int DEFAULT_PORT = 5050;
+    private static final ContactJournal journal = new ContactJournal(FILE_PATH);
 
     /// main
     public static void main(String[] args) {
-        execute();
+        ContactMetrics.start();
+        if (args.length == 0) {
+            execute();
+        } else if (args.length == 2 && args[0].equals("import")) {
+            importContacts(Paths.get(args[1]));
+        } else if (args.length == 2 && args[0].equals("export")) {
+            exportContacts(Paths.get(args[1]));
+        } else if (args.length <= 2 && args[0].equals("serve") && (args.length == 1 || validPort(args[1]))) {
+            serve(args.length == 2 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+        } else if (args[0].equals("dedupe") && (args.length == 1 || args.length == 2 && args[1].equals("merge"))) {
+            dedupeContacts(args.length == 2);
+        } else {
+            System.out.println("Usage: ContactManager [import <file> | export <file> | serve [port] | dedupe [merge]]");
+        }
+        ContactMetrics.stop();
+    }
+
+    // runs the lookup service until the process is stopped
+    private static void serve(int port) {
+        if (!lockContacts()) {
+            return;
+        }
+        ConcurrentContactStore contacts = loadContactsFromFileParallel();
+        openJournal(contacts);
+        ContactServer server;
+        try {
+            server = new ContactServer(contacts, () -> FuzzyNameIndex.attach(contacts), port);
+        } catch (IOException e) {
+            System.out.println("Error running server: " + e.getMessage());
+            closeJournal();
+            return;
+        }
+        // the journal is closed only once every handler is done, so no answered change is lost
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            closeServer(server);
+            closeJournal();
+            ContactMetrics.stop();
+        }));
+        System.out.println("Serving " + contacts.size() + " contacts on localhost:" + server.getPort());
+        try {
+            server.serve();
+        } catch (IOException e) {
+            System.out.println("Error running server: " + e.getMessage());
+            closeServer(server);
+            closeJournal();
+        }
+    }
+
+    private static void closeServer(ContactServer server) {
+        try {
+            server.close();
+        } catch (IOException e) {
+            // shutting down anyway
+        }
+    }
+
+    // batch mode, rows that can't be added are listed in <file>.rejected
+    private static void importContacts(Path source) {
+        if (!lockContacts()) {
+            return;
+        }
+        ConcurrentContactStore contacts = loadContactsFromFileParallel();
+        openJournal(contacts);
+        Path rejectedPath = source.resolveSibling(source.getFileName() + ".rejected");
+        try {
+            ContactBatch.ImportResult result = ContactBatch.importContacts(contacts, source, rejectedPath);
+            System.out.println("Imported " + result.imported + " contacts, rejected " + result.rejected
+                    + " (see " + rejectedPath + ").");
+        } catch (IOException e) {
+            System.out.println("Error importing contacts: " + e.getMessage());
+        }
+        closeJournal();
+    }
+
+    // locks too: recover() may finish a compaction or trim the journal, which a running writer owns
+    private static void exportContacts(Path target) {
+        if (!lockContacts()) {
+            return;
+        }
+        ContactStore contacts = loadContactsFromFileParallel();
+        try {
+            long written = ContactBatch.exportContacts(contacts, target);
+            System.out.println("Exported " + written + " contacts to " + target + ".");
+        } catch (IOException e) {
+            System.out.println("Error exporting contacts: " + e.getMessage());
+        }
+        closeJournal();
+    }
+
+    // lists contacts sharing a phone number or a name in contacts.txt.duplicates; with merge, only
+    // the first contact with each name is kept
+    private static void dedupeContacts(boolean merge) {
+        if (!lockContacts()) {
+            return;
+        }
+        recoverJournal();
+        Iterable<Contact> contacts;
+        long expectedRows;
+        try {
+            if (journal.hasRecords() || !Files.exists(FILE_PATH)) {
+                ContactStore store = loadContactsFromFileParallel();
+                contacts = store;
+                expectedRows = store.size();
+            } else {
+                // nothing to replay, so the file is read as it goes instead of being loaded
+                contacts = ContactDeduper.fileContacts(FILE_PATH);
+                expectedRows = Files.size(FILE_PATH) / AVERAGE_LINE_BYTES;
+            }
+            ContactDeduper deduper = ContactDeduper.group(contacts, expectedRows);
+            deduper.writeReport(contacts, DUPLICATES_PATH);
+            System.out.println("Found " + deduper.groups() + " groups sharing a name or phone number among "
+                    + deduper.rows() + " contacts (see " + DUPLICATES_PATH + ").");
+            if (merge) {
+                journal.rewrite(deduper.merged(contacts));
+                System.out.println("Merged away " + deduper.duplicates() + " contacts with a name already taken.");
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error finding duplicate contacts: " + e.getMessage());
+        }
+        closeJournal();
     }
 
     private static void execute(){
-        List<Contact> contacts = loadContactsFromFile();
+        if (!lockContacts()) {
+            return;
+        }
+        ConcurrentContactStore contacts = loadContactsFromFileParallel();
+        openJournal(contacts);
+        // built the first time option 7 is chosen
+        FuzzyNameIndex fuzzyNames = null;
+        // each built the first time option 1 lists in its order
+        Map<SortedContactView.Order, SortedContactView> views = new EnumMap<>(SortedContactView.Order.class);
         int choice;
         do {
             choice = showMainMenu();
             switch (choice) {
                 case 1:
-                    viewContacts(contacts);
+                    viewContacts(contacts, views);
                     break;
                 case 2:
                     addContact(contacts);
@@ -38,34 +175,126 @@ public class ContactManager {
                     deleteContact(contacts);
                     break;
                 case 5:
+                    searchContactsByPrefix(contacts);
+                    break;
+                case 6:
+                    searchContactByPhoneNumber(contacts);
+                    break;
+                case 7:
+                    if (fuzzyNames == null) {
+                        fuzzyNames = FuzzyNameIndex.attach(contacts);
+                    }
+                    searchContactsFuzzy(fuzzyNames);
+                    break;
+                case 8:
                     // Exit option, do nothing
                     break;
                 default:
                     System.out.println("Invalid choice. Please try again.");
             }
-        } while (choice != 5);
-        writeContactsToFile(contacts);
+        } while (choice != 8);
+        closeJournal();
     }
 
-    private static List<Contact> loadContactsFromFile() {
-        List<Contact> contacts = new ArrayList<>();
+    private static ConcurrentContactStore loadContactsFromFile() {
+        long start = System.nanoTime();
+        ConcurrentContactStore contacts = new ConcurrentContactStore();
+        ContactMetrics.watch(contacts);
+        recoverJournal();
         try {
-            List<String> lines = Files.readAllLines(FILE_PATH);
-            for (String line : lines) {
-                String[] parts = line.split(DELIMITER);
-                if (parts.length == 2) {
-                    String name = parts[0];
-                    String phoneNumber = parts[1];
-                    Contact contact = new Contact(name, phoneNumber);
-                    contacts.add(contact);
-                }
+            readContacts(FILE_PATH, contacts);
+        } catch (IOException e) {
+            System.out.println("Contacts file not found. Creating a new one.");
+        }
+        replayJournal(contacts);
+        ContactMetrics.LOAD.recordSince(start);
+        return contacts;
+    }
+
+    static void readContacts(Path path, ContactStore contacts) throws IOException {
+        List<String> lines = Files.readAllLines(path);
+        for (String line : lines) {
+            String[] parts = line.split(DELIMITER);
+            if (parts.length == 2) {
+                String name = parts[0];
+                String phoneNumber = parts[1];
+                Contact contact = new Contact(name, phoneNumber);
+                contacts.add(contact);
+            } else {
+                ContactMetrics.LINES_SKIPPED.increment();
+            }
+        }
+    }
+
+    // same result as loadContactsFromFile, but maps the file and parses it in parallel chunks
+    private static ConcurrentContactStore loadContactsFromFileParallel() {
+        long start = System.nanoTime();
+        ConcurrentContactStore contacts = new ConcurrentContactStore();
+        ContactMetrics.watch(contacts);
+        recoverJournal();
+        try {
+            for (Contact contact : new ContactFileLoader().load(FILE_PATH)) {
+                contacts.add(contact);
             }
         } catch (IOException e) {
             System.out.println("Contacts file not found. Creating a new one.");
         }
+        replayJournal(contacts);
+        ContactMetrics.LOAD.recordSince(start);
         return contacts;
     }
 
+    // one process at a time, see ContactJournal; released by closeJournal()
+    private static boolean lockContacts() {
+        try {
+            if (journal.lock()) {
+                return true;
+            }
+            System.out.println("Contacts are in use by another ContactManager, close it and try again.");
+        } catch (IOException e) {
+            System.out.println("Error locking contacts file: " + e.getMessage());
+        }
+        return false;
+    }
+
+    // finishes a compaction that was interrupted by a crash, before the contacts file is read
+    private static void recoverJournal() {
+        try {
+            journal.recover();
+        } catch (IOException e) {
+            System.out.println("Error recovering contacts journal.");
+        }
+    }
+
+    /// changes made since the contacts file was last written are in the journal
+    private static void replayJournal(ContactStore contacts) {
+        try {
+            journal.replay(contacts);
+        } catch (IOException e) {
+            System.out.println("Error reading contacts journal.");
+        }
+    }
+
+    // from here on every add and delete is journaled before the store makes it
+    private static void openJournal(ConcurrentContactStore contacts) {
+        try {
+            journal.open(contacts);
+        } catch (IOException e) {
+            System.out.println("Error opening contacts journal.");
+        }
+    }
+
+    // this is the save that blocks exit
+    private static void closeJournal() {
+        long start = System.nanoTime();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("Error writing contacts journal.");
+        }
+        ContactMetrics.EXIT_CLOSE.recordSince(start);
+    }
+
     // main menu Method
     private static int showMainMenu() {
         System.out.println("");
@@ -74,28 +303,87 @@ public class ContactManager {
         System.out.println("2. Add a new contact");
         System.out.println("3. Search a contact by name");
         System.out.println("4. Delete an existing contact");
-        System.out.println("5. Exit");
+        System.out.println("5. Search contacts by name prefix");
+        System.out.println("6. Search a contact by phone number");
+        System.out.println("7. Search contacts by approximate name");
+        System.out.println("8. Exit");
         System.out.println("");
-        System.out.print("Enter an option (1, 2, 3, 4, or 5): ");
+        System.out.print("Enter an option (1, 2, 3, 4, 5, 6, 7, or 8): ");
         System.out.println("");
         int userChoice = scanner.nextInt();
         scanner.nextLine();
         return userChoice;
     }
 
-    // Contact display format
-    private static void viewContacts(List<Contact> contacts) {
-        System.out.println("Contacts:");
-        System.out.println("Name\t\t\t\t  Phone number");
-        System.out.println("---------------------|----------------");
-        for (Contact contact : contacts) {
-            System.out.println(contact.getName() + "\t\t\t\t |" + contact.getPhoneNumber());
+    // sorted listing, PAGE_SIZE contacts at a time
+    private static void viewContacts(ConcurrentContactStore contacts,
+                                     Map<SortedContactView.Order, SortedContactView> views) {
+        System.out.print("Sort by name or by phone number (n/p): ");
+        SortedContactView.Order order = scanner.nextLine().trim().equalsIgnoreCase("p")
+                ? SortedContactView.Order.PHONE : SortedContactView.Order.NAME;
+        SortedContactView view = views.computeIfAbsent(order, o -> SortedContactView.attach(contacts, o));
+        int offset = 0;
+        while (true) {
+            int size = view.size();
+            if (offset >= size) {
+                // past the end shows the last page
+                offset = (size - 1) / PAGE_SIZE * PAGE_SIZE;
+            }
+            offset = Math.max(0, offset);
+            printPage(view.page(offset, PAGE_SIZE), offset, size);
+            System.out.print("Enter n (next), p (previous), a page number, @position, /"
+                    + (view.getOrder() == SortedContactView.Order.NAME ? "name" : "number") + " to jump, or q: ");
+            String command = scanner.nextLine().trim();
+            if (command.isEmpty() || command.equalsIgnoreCase("n")) {
+                if (offset + PAGE_SIZE < size) {
+                    offset += PAGE_SIZE;
+                }
+            } else if (command.equalsIgnoreCase("p")) {
+                offset -= PAGE_SIZE;
+            } else if (command.equalsIgnoreCase("q")) {
+                return;
+            } else if (command.startsWith("/")) {
+                offset = view.positionOf(command.substring(1));
+            } else {
+                try {
+                    offset = command.startsWith("@")
+                            ? Integer.parseInt(command.substring(1)) - 1
+                            : (Integer.parseInt(command) - 1) * PAGE_SIZE;
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid choice. Please try again.");
+                }
+            }
+        }
+    }
+
+    // Contact display format, the whole page goes out in one write
+    private static void printPage(List<Contact> page, int offset, int size) {
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()), 1 << 16);
+        try {
+            out.write("Contacts:");
+            out.newLine();
+            out.write("Name\t\t\t\t  Phone number");
+            out.newLine();
+            out.write("---------------------|----------------");
+            out.newLine();
+            for (Contact contact : page) {
+                out.write(contact.getName() + "\t\t\t\t |" + contact.getPhoneNumber());
+                out.newLine();
+            }
+            int pages = Math.max(1, (size + PAGE_SIZE - 1) / PAGE_SIZE);
+            out.write("Contacts " + (page.isEmpty() ? 0 : offset + 1) + "-" + (offset + page.size()) + " of " + size
+                    + ", page " + (offset / PAGE_SIZE + 1) + " of " + pages);
+            out.newLine();
+            // not closed, that would close System.out
+            out.flush();
+        } catch (IOException e) {
+            System.out.println("Error showing contacts.");
         }
     }
 
 
     ///Kurt go over in demo
-    private static void addContact(List<Contact> contacts) {
+    private static void addContact(ContactStore contacts) {
         System.out.print("Enter the contact name: ");
         String name = scanner.nextLine();
         String trimmedName = name.trim();
@@ -226,81 +514,131 @@ public class ContactManager {
         ///
 
         // Check if a contact with the same name already exists
-        for (Contact existingContact : contacts) {
-            if (existingContact.getName().equalsIgnoreCase(trimmedName)) {
-                System.out.println("Contact already exists.");
-                return;
-            }
+        if (contacts.containsName(trimmedName)) {
+            System.out.println("Contact already exists.");
+            return;
         }
 
         System.out.print("Enter the phone number: ");
         String phoneNumberStr = scanner.nextLine();
 
         if (!validPhoneNumber(phoneNumberStr)) {
+            ContactMetrics.VALIDATION_FAILURES.increment();
             System.out.println("Not a valid phone number.");
             return;
         }
 
 //adds trimmed name and phone number into parameter , to create new object
         Contact contact = new Contact(trimmedName, phoneNumberStr);
-        contacts.add(contact);
+        // someone else may have added the name while the phone number was typed
+        try {
+            if (!contacts.addIfAbsent(contact)) {
+                System.out.println("Contact already exists.");
+                return;
+            }
+        } catch (UncheckedIOException e) {
+            System.out.println("Error saving contact, no more changes can be saved: " + e.getMessage());
+            return;
+        }
         System.out.println("Contact added successfully.");
     }
 
 
-    private static void searchContactByName(List<Contact> contacts) {
+    private static void searchContactByName(ContactStore contacts) {
 //        Scanner scanner = new Scanner(System.in);
 
         System.out.print("Enter the name to search: ");
         String searchName = scanner.nextLine();
-        boolean found = false;
-        for (Contact contact : contacts) {
-            if (contact.getName().equalsIgnoreCase(searchName)) {
-                System.out.println("Contact found:");
-                System.out.println("Name: " + contact.getName());
-                System.out.println("Phone number: " + contact.getPhoneNumber());
-                found = true;
-            }
+        List<Contact> matches = contacts.findByName(searchName);
+        for (Contact contact : matches) {
+            System.out.println("Contact found:");
+            System.out.println("Name: " + contact.getName());
+            System.out.println("Phone number: " + contact.getPhoneNumber());
+        }
+        if (matches.isEmpty()) {
+            System.out.println("Contact could not be found.");
+        }
+    }
+
+
+    private static void searchContactsByPrefix(ContactStore contacts) {
+        System.out.print("Enter the start of the name: ");
+        String prefix = scanner.nextLine();
+        List<Contact> matches = contacts.findByNamePrefix(prefix, PREFIX_SEARCH_LIMIT);
+        for (Contact contact : matches) {
+            System.out.println(contact.getName() + "\t\t\t\t |" + contact.getPhoneNumber());
+        }
+        if (matches.isEmpty()) {
+            System.out.println("No contacts start with that name.");
+        }
+    }
+
+
+    // tolerates typos and stray spaces, closest names first
+    private static void searchContactsFuzzy(FuzzyNameIndex fuzzyNames) {
+        System.out.print("Enter the name to search: ");
+        String searchName = scanner.nextLine();
+        List<Contact> matches = fuzzyNames.search(searchName, FUZZY_SEARCH_LIMIT);
+        for (Contact contact : matches) {
+            System.out.println(contact.getName() + "\t\t\t\t |" + contact.getPhoneNumber());
+        }
+        if (matches.isEmpty()) {
+            System.out.println("No contacts have a similar name.");
         }
-        if (!found) {
+    }
+
+
+    private static void searchContactByPhoneNumber(ContactStore contacts) {
+        System.out.print("Enter the phone number to search: ");
+        String phoneNumber = scanner.nextLine();
+        List<Contact> matches = contacts.findByPhoneNumber(phoneNumber);
+        for (Contact contact : matches) {
+            System.out.println("Contact found:");
+            System.out.println("Name: " + contact.getName());
+            System.out.println("Phone number: " + contact.getPhoneNumber());
+        }
+        if (matches.isEmpty()) {
             System.out.println("Contact could not be found.");
         }
     }
 
 
-    private static void deleteContact(List<Contact> contacts) {
+    private static void deleteContact(ContactStore contacts) {
 //        Scanner scanner = new Scanner(System.in);
         System.out.print("Enter the name of the contact to delete: ");
         String deleteName = scanner.nextLine();
-        boolean deleted = false;
-        for (Contact contact : contacts) {
-            if (contact.getName().equalsIgnoreCase(deleteName)) {
-                contacts.remove(contact);
+        try {
+            if (contacts.removeByName(deleteName) != null) {
                 System.out.println("Contact deleted successfully.");
-                deleted = true;
-                break;
+            } else {
+                System.out.println("Contact could not be found.");
             }
+        } catch (UncheckedIOException e) {
+            System.out.println("Error saving deletion, no more changes can be saved: " + e.getMessage());
         }
-        if (!deleted) {
-            System.out.println("Contact could not be found.");
+    }
+
+
+    // the whole-file save the journal replaced, only kept as SaveBenchmark's baseline
+    static void writeContacts(Path path, ContactStore contacts) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Contact contact : contacts) {
+            lines.add(contact.getName() + DELIMITER + contact.getPhoneNumber());
         }
+        Files.write(path, lines);
     }
 
 
-    /// puts new contact object in the contact.txt file
-    private static void writeContactsToFile(List<Contact> contacts) {
+    // 0 to 65535, 0 picking a free port
+    private static boolean validPort(String port) {
         try {
-            List<String> lines = new ArrayList<>();
-            for (Contact contact : contacts) {
-                lines.add(contact.getName() + DELIMITER + contact.getPhoneNumber());
-            }
-            Files.write(FILE_PATH, lines);
-        } catch (IOException e) {
-            System.out.println("Error writing contacts to file.");
+            int value = Integer.parseInt(port);
+            return value >= 0 && value <= 65535;
+        } catch (NumberFormatException e) {
+            return false;
         }
     }
 
-
     // method for validation
     public static boolean validPhoneNumber(String phoneNumberStr) {
         // Check if the string length is exactly 10 characters
@@ -0,0 +1,205 @@
+package contactManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Process-wide latency histograms, counters and heap gauges.
+// Published over JMX and written to contacts-metrics.txt every contacts.metrics.dumpSeconds.
+public class ContactMetrics implements ContactMetricsMXBean {
+    static final LatencyHistogram LOAD = new LatencyHistogram();
+    // one per kind of lookup, their costs are too far apart to share a histogram
+    static final LatencyHistogram SEARCH_NAME = new LatencyHistogram();
+    static final LatencyHistogram SEARCH_PREFIX = new LatencyHistogram();
+    static final LatencyHistogram SEARCH_PHONE = new LatencyHistogram();
+    static final LatencyHistogram SEARCH_FUZZY = new LatencyHistogram();
+    static final LatencyHistogram ADD = new LatencyHistogram();
+    static final LatencyHistogram DELETE = new LatencyHistogram();
+    // rewriting the contacts file from a snapshot, usually in the background
+    static final LatencyHistogram COMPACTION = new LatencyHistogram();
+    // closing the journal at exit, how long saving holds up the exit
+    static final LatencyHistogram EXIT_CLOSE = new LatencyHistogram();
+    // lines of the contacts file dropped because they don't split into exactly 2 parts
+    static final LongAdder LINES_SKIPPED = new LongAdder();
+    // phone numbers turned down by validPhoneNumber
+    static final LongAdder VALIDATION_FAILURES = new LongAdder();
+
+    private static final String OBJECT_NAME = "contactManager:type=ContactMetrics";
+    private static final Path DUMP_PATH = Paths.get("contacts-metrics.txt");
+
+    private static volatile LongSupplier contacts = () -> 0;
+    private static ScheduledExecutorService dumper;
+
+    // the store whose size is reported
+    static void watch(ContactStore store) {
+        contacts = store::size;
+    }
+
+    static synchronized void start() {
+        if (dumper != null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new ContactMetrics(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.out.println("Error publishing metrics over JMX.");
+        }
+        long seconds = Long.getLong("contacts.metrics.dumpSeconds", 60);
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "contacts-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleWithFixedDelay(ContactMetrics::dumpQuietly, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    // writes a last dump, so short runs leave one behind as well
+    static synchronized void stop() {
+        if (dumper == null) {
+            return;
+        }
+        dumper.shutdownNow();
+        dumper = null;
+        dumpQuietly();
+    }
+
+    private static void dumpQuietly() {
+        try {
+            dump(DUMP_PATH);
+        } catch (IOException e) {
+            System.out.println("Error writing metrics.");
+        }
+    }
+
+    // one "name=value" per line, replaced as a whole so readers never see half a dump
+    static void dump(Path path) throws IOException {
+        ContactMetrics metrics = new ContactMetrics();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writeHistogram(writer, "load", metrics.getLoad());
+            writeHistogram(writer, "search.name", metrics.getSearchName());
+            writeHistogram(writer, "search.prefix", metrics.getSearchPrefix());
+            writeHistogram(writer, "search.phone", metrics.getSearchPhone());
+            writeHistogram(writer, "search.fuzzy", metrics.getSearchFuzzy());
+            writeHistogram(writer, "add", metrics.getAdd());
+            writeHistogram(writer, "delete", metrics.getDelete());
+            writeHistogram(writer, "compaction", metrics.getCompaction());
+            writeHistogram(writer, "exit.close", metrics.getExitClose());
+            writeValue(writer, "lines.skipped", metrics.getLinesSkipped());
+            writeValue(writer, "validation.failures", metrics.getValidationFailures());
+            writeValue(writer, "contacts", metrics.getContacts());
+            writeValue(writer, "heap.used.bytes", metrics.getHeapUsedBytes());
+            writeValue(writer, "heap.committed.bytes", metrics.getHeapCommittedBytes());
+            writeValue(writer, "heap.max.bytes", metrics.getHeapMaxBytes());
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeHistogram(BufferedWriter writer, String name, LatencyHistogram.Snapshot snapshot)
+            throws IOException {
+        writeValue(writer, name + ".count", snapshot.getCount());
+        writeValue(writer, name + ".mean.ns", snapshot.getMeanNanos());
+        writeValue(writer, name + ".p50.ns", snapshot.getP50Nanos());
+        writeValue(writer, name + ".p90.ns", snapshot.getP90Nanos());
+        writeValue(writer, name + ".p99.ns", snapshot.getP99Nanos());
+        writeValue(writer, name + ".p999.ns", snapshot.getP999Nanos());
+        writeValue(writer, name + ".max.ns", snapshot.getMaxNanos());
+    }
+
+    private static void writeValue(BufferedWriter writer, String name, long value) throws IOException {
+        writer.write(name + "=" + value);
+        writer.newLine();
+    }
+
+    private static MemoryUsage heap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getLoad() {
+        return LOAD.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getSearchName() {
+        return SEARCH_NAME.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getSearchPrefix() {
+        return SEARCH_PREFIX.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getSearchPhone() {
+        return SEARCH_PHONE.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getSearchFuzzy() {
+        return SEARCH_FUZZY.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getAdd() {
+        return ADD.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getDelete() {
+        return DELETE.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getCompaction() {
+        return COMPACTION.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getExitClose() {
+        return EXIT_CLOSE.snapshot();
+    }
+
+    @Override
+    public long getLinesSkipped() {
+        return LINES_SKIPPED.sum();
+    }
+
+    @Override
+    public long getValidationFailures() {
+        return VALIDATION_FAILURES.sum();
+    }
+
+    @Override
+    public long getContacts() {
+        return contacts.getAsLong();
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return heap().getUsed();
+    }
+
+    @Override
+    public long getHeapCommittedBytes() {
+        return heap().getCommitted();
+    }
+
+    @Override
+    public long getHeapMaxBytes() {
+        return heap().getMax();
+    }
+}
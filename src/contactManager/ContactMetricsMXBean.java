@@ -0,0 +1,35 @@
+package contactManager;
+
+// What ContactMetrics shows over JMX, under contactManager:type=ContactMetrics
+public interface ContactMetricsMXBean {
+
+    LatencyHistogram.Snapshot getLoad();
+
+    LatencyHistogram.Snapshot getSearchName();
+
+    LatencyHistogram.Snapshot getSearchPrefix();
+
+    LatencyHistogram.Snapshot getSearchPhone();
+
+    LatencyHistogram.Snapshot getSearchFuzzy();
+
+    LatencyHistogram.Snapshot getAdd();
+
+    LatencyHistogram.Snapshot getDelete();
+
+    LatencyHistogram.Snapshot getCompaction();
+
+    LatencyHistogram.Snapshot getExitClose();
+
+    long getLinesSkipped();
+
+    long getValidationFailures();
+
+    long getContacts();
+
+    long getHeapUsedBytes();
+
+    long getHeapCommittedBytes();
+
+    long getHeapMaxBytes();
+}
@@ -0,0 +1,220 @@
+package contactManager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Line-based lookup service on the loopback interface, one virtual thread per connection.
+//
+// Each request is one line, "COMMAND argument", answered with "OK <count>" and that many
+// "name,phone" lines, or with a single "ERR <message>" line:
+//   FIND <name>        contacts with this name
+//   PREFIX <prefix>    up to PREFIX_LIMIT contacts whose name starts with prefix
+//   PHONE <number>     contacts with this phone number
+//   FUZZY <name>       up to FUZZY_LIMIT contacts with a similar name, closest first
+//   ADD <name>,<phone> add a contact, "OK 0" on success
+//   DELETE <name>      delete the first contact with this name, "OK 1" with the deleted contact
+class ContactServer implements AutoCloseable {
+    private static final String DELIMITER = ",";
+    private static final int PREFIX_LIMIT = 10;
+    private static final int FUZZY_LIMIT = 10;
+    private static final int DRAIN_SECONDS = 30;
+
+    private final ContactStore contacts;
+    private final Supplier<FuzzyNameIndex> fuzzyIndexer;
+    // built on the first FUZZY request, servers that never get one don't pay for it
+    private volatile FuzzyNameIndex fuzzyNames;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+
+    // port 0 picks a free port
+    ContactServer(ContactStore contacts, Supplier<FuzzyNameIndex> fuzzyIndexer, int port) throws IOException {
+        this.contacts = contacts;
+        this.fuzzyIndexer = fuzzyIndexer;
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // accepts connections until close() is called
+    void serve() throws IOException {
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                open.add(socket);
+                try {
+                    connections.submit(() -> handle(socket));
+                } catch (RejectedExecutionException e) {
+                    // accepted just as close() began
+                    open.remove(socket);
+                    socket.close();
+                }
+            }
+        } catch (SocketException e) {
+            if (!serverSocket.isClosed()) {
+                throw e;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            String request;
+            while ((request = in.readLine()) != null) {
+                respond(request, out);
+                // pipelined requests are answered together
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // the client went away, nothing to answer
+        } finally {
+            open.remove(socket);
+        }
+    }
+
+    private void respond(String request, BufferedWriter out) throws IOException {
+        int space = request.indexOf(' ');
+        String command = space < 0 ? request : request.substring(0, space);
+        String argument = space < 0 ? "" : request.substring(space + 1);
+        switch (command) {
+            case "FIND":
+                writeContacts(contacts.findByName(argument), out);
+                break;
+            case "PREFIX":
+                writeContacts(contacts.findByNamePrefix(argument, PREFIX_LIMIT), out);
+                break;
+            case "PHONE":
+                writeContacts(contacts.findByPhoneNumber(argument), out);
+                break;
+            case "FUZZY":
+                writeContacts(fuzzyNames().search(argument, FUZZY_LIMIT), out);
+                break;
+            case "ADD":
+                add(argument, out);
+                break;
+            case "DELETE":
+                Contact deleted;
+                try {
+                    deleted = contacts.removeByName(argument);
+                } catch (UncheckedIOException e) {
+                    writeError("Could not save the change.", out);
+                    break;
+                }
+                if (deleted == null) {
+                    writeError("Contact could not be found.", out);
+                } else {
+                    writeContacts(List.of(deleted), out);
+                }
+                break;
+            default:
+                writeError("Unknown command.", out);
+        }
+    }
+
+    private FuzzyNameIndex fuzzyNames() {
+        FuzzyNameIndex index = fuzzyNames;
+        if (index == null) {
+            synchronized (this) {
+                index = fuzzyNames;
+                if (index == null) {
+                    index = fuzzyIndexer.get();
+                    fuzzyNames = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    // the menu's checks, plus the ones a line needs: a comma in the name would split the saved line
+    // differently, and an empty name or number can't be looked up
+    private void add(String argument, BufferedWriter out) throws IOException {
+        String[] parts = argument.split(DELIMITER, -1);
+        if (parts.length != 2) {
+            writeError("Expected ADD <name>,<phone>.", out);
+            return;
+        }
+        String name = parts[0].trim();
+        String phoneNumber = parts[1];
+        if (name.isEmpty()) {
+            writeError("Name cannot be empty.", out);
+        } else if (phoneNumber.isEmpty() || !ContactManager.validPhoneNumber(phoneNumber)) {
+            ContactMetrics.VALIDATION_FAILURES.increment();
+            writeError("Not a valid phone number.", out);
+        } else {
+            boolean added;
+            try {
+                added = contacts.addIfAbsent(new Contact(name, phoneNumber));
+            } catch (UncheckedIOException e) {
+                writeError("Could not save the change.", out);
+                return;
+            }
+            if (added) {
+                writeContacts(List.of(), out);
+            } else {
+                writeError("Contact already exists.", out);
+            }
+        }
+    }
+
+    private static void writeContacts(List<Contact> matches, BufferedWriter out) throws IOException {
+        out.write("OK " + matches.size());
+        out.write('\n');
+        for (Contact contact : matches) {
+            out.write(contact.getName());
+            out.write(DELIMITER);
+            out.write(contact.getPhoneNumber());
+            out.write('\n');
+        }
+    }
+
+    private static void writeError(String message, BufferedWriter out) throws IOException {
+        out.write("ERR " + message);
+        out.write('\n');
+    }
+
+    // stops accepting, lets every handler finish the request it is on and waits for them, so each
+    // change already answered OK has reached the store and its listeners before this returns.
+    // Handlers are never interrupted: one may be in the middle of a journal write.
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdown();
+        for (Socket socket : open) {
+            try {
+                // the handler reads end of stream once it is done with what it has
+                socket.shutdownInput();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+        try {
+            connections.awaitTermination(DRAIN_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
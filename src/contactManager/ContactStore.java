@@ -0,0 +1,42 @@
+package contactManager;
+
+import java.util.List;
+
+// Operations the menu and loaders need from a contact store.
+// Names are matched case-insensitively; several contacts may share a name when loaded from a file.
+// A store that journals its changes throws UncheckedIOException from a change it couldn't journal.
+public interface ContactStore extends Iterable<Contact> {
+
+    void add(Contact contact);
+
+    // adds the contact unless one with the same name exists, as one step
+    default boolean addIfAbsent(Contact contact) {
+        if (containsName(contact.getName())) {
+            return false;
+        }
+        add(contact);
+        return true;
+    }
+
+    boolean containsName(String name);
+
+    // the first contact added under this name, or null
+    default Contact get(String name) {
+        List<Contact> matches = findByName(name);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    List<Contact> findByName(String name);
+
+    List<Contact> findByNamePrefix(String prefix, int limit);
+
+    List<Contact> findByPhoneNumber(String phoneNumber);
+
+    // removes the first contact added under this name, or returns null if there is none
+    Contact removeByName(String name);
+
+    // copy in insertion order
+    List<Contact> snapshot();
+
+    int size();
+}
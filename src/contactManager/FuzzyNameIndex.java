@@ -0,0 +1,372 @@
+package contactManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Typo-tolerant name search. Each distinct name (trimmed and case-folded) is split into trigrams,
+// padded at both ends so short names and first letters count too, and every trigram keeps a list
+// of the names containing it. A query only reads the rarest of its trigrams' lists, enough that
+// any name within the edit bound must appear in one. Names of the wrong length or sharing too few
+// trigrams are dropped, and only the rest are checked with a banded edit distance, so the common
+// trigrams that would match most of the directory are never scanned. A swap of two adjacent
+// letters counts as one edit, like any other typo. A query with too few distinct trigrams to rule
+// any name out, such as a repeated syllable or a short name at two edits, is checked against every
+// name of a close enough length instead, first ruling out names whose set of letters is too far off.
+//
+// Kept up to date as a store listener; queries share a read lock and changes take the write lock.
+public class FuzzyNameIndex implements ConcurrentContactStore.Listener {
+    public static final int DEFAULT_MAX_EDITS = 2;
+    private static final char PAD = '\u0001';
+    // one edit changes at most this many of the padded trigrams, four for a swap of adjacent letters
+    private static final int GRAMS_PER_EDIT = 4;
+    private static final int SHORT_NAME = 6;
+
+    private static final class Term {
+        final int id;
+        final String name;
+        final long[] grams;
+        final List<Contact> contacts = new ArrayList<>(1);
+        // where the id sits among the names of its length
+        int lengthSlot;
+
+        Term(int id, String name, long[] grams) {
+            this.id = id;
+            this.name = name;
+            this.grams = grams;
+        }
+    }
+
+    // ids of the names containing one trigram, unordered
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Match implements Comparable<Match> {
+        final Term term;
+        final int distance;
+
+        Match(Term term, int distance) {
+            this.term = term;
+            this.distance = distance;
+        }
+
+        // worst match first, so the queue can drop it
+        @Override
+        public int compareTo(Match other) {
+            if (distance != other.distance) {
+                return Integer.compare(other.distance, distance);
+            }
+            return other.term.name.compareTo(term.name);
+        }
+    }
+
+    private static final Postings EMPTY = new Postings();
+
+    private final Map<String, Term> terms = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    // ids of the names of each length
+    private Postings[] byLength = new Postings[16];
+    private Term[] byId = new Term[16];
+    // name lengths by id, so the length check doesn't have to follow the term
+    private int[] lengths = new int[16];
+    // the letters each name contains, see letters()
+    private long[] letters = new long[16];
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int nextId;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // indexes what the store holds now and follows every later change, with no change slipping between
+    public static FuzzyNameIndex attach(ConcurrentContactStore contacts) {
+        FuzzyNameIndex index = new FuzzyNameIndex();
+        return contacts.withWritesPaused(() -> {
+            for (Contact contact : contacts) {
+                index.added(contact);
+            }
+            contacts.addListener(index);
+            return index;
+        });
+    }
+
+    // one bit per letter the name contains, letters 64 apart sharing a bit. An edit sets or clears at
+    // most two bits and a swap none, so names within n edits differ in at most 2 * n bits.
+    static long letters(String name) {
+        long bits = 0;
+        for (int i = 0; i < name.length(); i++) {
+            bits |= 1L << (name.charAt(i) & 63);
+        }
+        return bits;
+    }
+
+    // distinct trigrams of the padded name, each packed into the low 48 bits of a long
+    static long[] grams(String name) {
+        String padded = "" + PAD + PAD + name + PAD + PAD;
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add((long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2));
+        }
+        long[] result = new long[grams.size()];
+        int i = 0;
+        for (long gram : grams) {
+            result[i++] = gram;
+        }
+        return result;
+    }
+
+    @Override
+    public void added(Contact contact) {
+        String name = ContactIndex.normalizeName(contact.getName());
+        lock.writeLock().lock();
+        try {
+            Term term = terms.get(name);
+            if (term == null) {
+                term = new Term(newId(), name, grams(name));
+                terms.put(name, term);
+                byId[term.id] = term;
+                lengths[term.id] = name.length();
+                letters[term.id] = letters(name);
+                for (long gram : term.grams) {
+                    postings.computeIfAbsent(gram, g -> new Postings()).add(term.id);
+                }
+                Postings sameLength = lengthBucket(name.length());
+                term.lengthSlot = sameLength.size;
+                sameLength.add(term.id);
+            }
+            term.contacts.add(contact);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removed(Contact contact) {
+        String name = ContactIndex.normalizeName(contact.getName());
+        lock.writeLock().lock();
+        try {
+            Term term = terms.get(name);
+            if (term == null || !term.contacts.remove(contact) || !term.contacts.isEmpty()) {
+                return;
+            }
+            terms.remove(name);
+            // the last id of the bucket takes the removed one's place
+            Postings sameLength = byLength[name.length()];
+            int moved = sameLength.ids[--sameLength.size];
+            sameLength.ids[term.lengthSlot] = moved;
+            byId[moved].lengthSlot = term.lengthSlot;
+            byId[term.id] = null;
+            for (long gram : term.grams) {
+                Postings list = postings.get(gram);
+                list.remove(term.id);
+                if (list.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+            }
+            freeIds[freeCount++] = term.id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Postings lengthBucket(int length) {
+        if (length >= byLength.length) {
+            byLength = Arrays.copyOf(byLength, Math.max(length + 1, byLength.length * 2));
+        }
+        if (byLength[length] == null) {
+            byLength[length] = new Postings();
+        }
+        return byLength[length];
+    }
+
+    private int newId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+        if (nextId == byId.length) {
+            byId = Arrays.copyOf(byId, nextId * 2);
+            lengths = Arrays.copyOf(lengths, nextId * 2);
+            letters = Arrays.copyOf(letters, nextId * 2);
+        }
+        return nextId++;
+    }
+
+    public List<Contact> search(String query, int limit) {
+        return search(query, limit, DEFAULT_MAX_EDITS);
+    }
+
+    // up to limit contacts whose name is within maxEdits edits of query, closest first, ties by name.
+    // Short queries get a tighter bound: one edit below SHORT_NAME characters, none below three.
+    public List<Contact> search(String query, int limit, int maxEdits) {
+        long start = System.nanoTime();
+        String name = ContactIndex.normalizeName(query);
+        long[] queryGrams = grams(name);
+        int edits = Math.min(maxEdits, name.length() < 3 ? 0 : name.length() < SHORT_NAME ? 1 : 2);
+        // a name within the bound keeps at least this many of the query's distinct trigrams
+        int required = queryGrams.length - GRAMS_PER_EDIT * edits;
+        long queryLetters = letters(name);
+        PriorityQueue<Match> best = new PriorityQueue<>();
+        lock.readLock().lock();
+        try {
+            if (required < 1) {
+                // any name could be within the bound, only its length rules it out
+                for (int length = Math.max(0, name.length() - edits); length <= name.length() + edits; length++) {
+                    Postings list = length < byLength.length && byLength[length] != null ? byLength[length] : EMPTY;
+                    for (int i = 0; i < list.size; i++) {
+                        int id = list.ids[i];
+                        if (Long.bitCount(letters[id] ^ queryLetters) <= 2 * edits) {
+                            consider(byId[id], name, edits, best, limit);
+                        }
+                    }
+                }
+            } else {
+                // a name within the bound is missing at most length - required of the query's trigrams,
+                // so it has one of any length - required + 1 of them: take those with the shortest lists
+                Long[] rarest = new Long[queryGrams.length];
+                for (int i = 0; i < queryGrams.length; i++) {
+                    rarest[i] = queryGrams[i];
+                }
+                Arrays.sort(rarest, Comparator.comparingInt(gram -> postings.getOrDefault(gram, EMPTY).size));
+                for (int l = 0; l <= queryGrams.length - required; l++) {
+                    Postings list = postings.getOrDefault(rarest[l], EMPTY);
+                    for (int i = 0; i < list.size; i++) {
+                        int id = list.ids[i];
+                        if (Math.abs(lengths[id] - name.length()) > edits
+                                || Long.bitCount(letters[id] ^ queryLetters) > 2 * edits) {
+                            continue;
+                        }
+                        Term term = byId[id];
+                        if (seenEarlier(term, rarest, l) || shared(term, queryGrams) < required) {
+                            continue;
+                        }
+                        consider(term, name, edits, best, limit);
+                    }
+                }
+            }
+            Match[] ranked = best.toArray(new Match[0]);
+            Arrays.sort(ranked, (a, b) -> b.compareTo(a));
+            List<Contact> matches = new ArrayList<>();
+            for (Match match : ranked) {
+                for (Contact contact : match.term.contacts) {
+                    if (matches.size() == limit) {
+                        return matches;
+                    }
+                    matches.add(contact);
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+            ContactMetrics.SEARCH_FUZZY.recordSince(start);
+        }
+    }
+
+    // keeps the term among the limit best if it is within edits of name
+    private static void consider(Term term, String name, int edits, PriorityQueue<Match> best, int limit) {
+        int distance = distance(name, term.name, edits);
+        if (distance <= edits) {
+            best.add(new Match(term, distance));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+    }
+
+    // whether the term was already in one of the first count lists
+    private static boolean seenEarlier(Term term, Long[] grams, int count) {
+        for (int l = 0; l < count; l++) {
+            long gram = grams[l];
+            for (long own : term.grams) {
+                if (own == gram) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int shared(Term term, long[] grams) {
+        int count = 0;
+        for (long gram : grams) {
+            for (long own : term.grams) {
+                if (own == gram) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Optimal string alignment distance, Levenshtein with a swap of adjacent letters as one edit, or
+    // bound + 1 once it is known to exceed bound. Only the diagonal band of width 2 * bound + 1 is
+    // filled in.
+    static int distance(String a, String b, int bound) {
+        if (Math.abs(a.length() - b.length()) > bound) {
+            return bound + 1;
+        }
+        int over = bound + 1;
+        // row i - 2, for swaps
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j <= bound ? j : over;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - bound);
+            int to = Math.min(b.length(), i + bound);
+            current[0] = i <= bound ? i : over;
+            if (from > 1) {
+                current[from - 1] = over;
+            }
+            int rowMin = current[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, beforePrevious[j - 2] + 1);
+                }
+                current[j] = Math.min(value, over);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < b.length()) {
+                current[to + 1] = over;
+            }
+            if (rowMin > bound) {
+                return over;
+            }
+            int[] reuse = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = reuse;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,284 @@
+package contactManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Contacts kept sorted by name or by phone number as they are added and deleted, so a page of the
+// listing can be read without sorting or walking what comes before it.
+//
+// The contacts sit in a treap where each node counts its subtree, which finds the contact at any
+// position in O(log n); a page is that search plus an in-order walk of the page itself. Equal keys
+// keep insertion order. Kept up to date as a store listener; pages share a read lock and changes
+// take the write lock.
+//
+// What the store already holds is sorted once and built into a balanced tree in O(n log n), rather
+// than going through n separate inserts.
+public class SortedContactView implements ConcurrentContactStore.Listener {
+    // keys compare as plain strings, so a jump to a prefix lands on the first key starting with it
+    public enum Order {
+        // trimmed and case-folded
+        NAME,
+        // digits only, compared digit by digit rather than as numbers
+        PHONE;
+
+        String key(Contact contact) {
+            return normalize(this == NAME ? contact.getName() : contact.getPhoneNumber());
+        }
+
+        String normalize(String text) {
+            return this == NAME ? ContactIndex.normalizeName(text) : ContactIndex.normalizePhone(text);
+        }
+    }
+
+    private static final class Node {
+        final String key;
+        final long sequence;
+        final Contact contact;
+        // swapped between nodes while a bulk-built tree is put in heap order
+        int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(String key, long sequence, Contact contact, int priority) {
+            this.key = key;
+            this.sequence = sequence;
+            this.contact = contact;
+            this.priority = priority;
+        }
+    }
+
+    private final Order order;
+    private Node root;
+    private long sequence;
+    // where each contact sits, for finding it again on delete
+    private final Map<Contact, Node> nodes = new IdentityHashMap<>();
+    private final SplittableRandom priorities = new SplittableRandom();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private SortedContactView(Order order) {
+        this.order = order;
+    }
+
+    // sorts what the store holds now and follows every later change, with no change slipping between
+    public static SortedContactView attach(ConcurrentContactStore contacts, Order order) {
+        SortedContactView view = new SortedContactView(order);
+        return contacts.withWritesPaused(() -> {
+            view.build(contacts);
+            contacts.addListener(view);
+            return view;
+        });
+    }
+
+    private void build(Iterable<Contact> contacts) {
+        lock.writeLock().lock();
+        try {
+            List<Node> sorted = new ArrayList<>();
+            for (Contact contact : contacts) {
+                Node node = new Node(order.key(contact), sequence++, contact, priorities.nextInt());
+                nodes.put(contact, node);
+                sorted.add(node);
+            }
+            Node[] array = sorted.toArray(new Node[0]);
+            // stable, so equal keys stay in sequence order
+            Arrays.sort(array, (a, b) -> a.key.compareTo(b.key));
+            root = build(array, 0, array.length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // nodes[from, to) as a balanced tree in heap order of priority
+    private static Node build(Node[] nodes, int from, int to) {
+        if (from == to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Node node = nodes[middle];
+        node.left = build(nodes, from, middle);
+        node.right = build(nodes, middle + 1, to);
+        siftDown(node);
+        return update(node);
+    }
+
+    // moves the node's priority down until no child's is higher; the subtrees are already heaps
+    private static void siftDown(Node node) {
+        while (true) {
+            Node highest = node;
+            if (node.left != null && node.left.priority > highest.priority) {
+                highest = node.left;
+            }
+            if (node.right != null && node.right.priority > highest.priority) {
+                highest = node.right;
+            }
+            if (highest == node) {
+                return;
+            }
+            int priority = node.priority;
+            node.priority = highest.priority;
+            highest.priority = priority;
+            node = highest;
+        }
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size(root);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void added(Contact contact) {
+        lock.writeLock().lock();
+        try {
+            Node node = new Node(order.key(contact), sequence++, contact, priorities.nextInt());
+            nodes.put(contact, node);
+            Node[] parts = split(root, node);
+            root = merge(merge(parts[0], node), parts[1]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removed(Contact contact) {
+        lock.writeLock().lock();
+        try {
+            Node node = nodes.remove(contact);
+            if (node != null) {
+                root = remove(root, node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // up to count contacts starting at position offset, counting from 0
+    public List<Contact> page(int offset, int count) {
+        List<Contact> page = new ArrayList<>(Math.max(0, Math.min(count, 1024)));
+        lock.readLock().lock();
+        try {
+            // ancestors still to visit in order: the node at offset and those it sits left of
+            Deque<Node> path = new ArrayDeque<>();
+            Node node = root;
+            int skip = offset;
+            while (node != null) {
+                int leftSize = size(node.left);
+                if (skip < leftSize) {
+                    path.push(node);
+                    node = node.left;
+                } else if (skip == leftSize) {
+                    path.push(node);
+                    break;
+                } else {
+                    skip -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+            while (page.size() < count && !path.isEmpty()) {
+                Node next = path.pop();
+                page.add(next.contact);
+                for (Node child = next.right; child != null; child = child.left) {
+                    path.push(child);
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // position of the first contact at or after text in this order, e.g. the first name starting with it
+    public int positionOf(String text) {
+        String key = order.normalize(text);
+        lock.readLock().lock();
+        try {
+            int position = 0;
+            Node node = root;
+            while (node != null) {
+                if (key.compareTo(node.key) <= 0) {
+                    node = node.left;
+                } else {
+                    position += size(node.left) + 1;
+                    node = node.right;
+                }
+            }
+            return position;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int compare(Node a, Node b) {
+        int byKey = a.key.compareTo(b.key);
+        return byKey != 0 ? byKey : Long.compare(a.sequence, b.sequence);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+
+    // nodes before pivot, and nodes from pivot on
+    private Node[] split(Node node, Node pivot) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(node, pivot) < 0) {
+            Node[] parts = split(node.right, pivot);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        }
+        Node[] parts = split(node.left, pivot);
+        node.left = parts[1];
+        parts[1] = update(node);
+        return parts;
+    }
+
+    // every node of a comes before every node of b
+    private static Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            return update(a);
+        }
+        b.left = merge(a, b.left);
+        return update(b);
+    }
+
+    private Node remove(Node node, Node target) {
+        if (node == target) {
+            return merge(node.left, node.right);
+        }
+        if (compare(target, node) < 0) {
+            node.left = remove(node.left, target);
+        } else {
+            node.right = remove(node.right, target);
+        }
+        return update(node);
+    }
+}